@@ -0,0 +1,92 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Secondary index from normalized author name to the catalog nodes by that author.
+ * Authors are kept in a sorted map, so both exact lookups and prefix queries
+ * are answered in O(log a + k) for a authors and k results, without scanning the catalog.
+ */
+class AuthorIndex {
+    private final TreeMap<String, LinkedHashSet<LibraryItemNode>> authors;
+
+    /**
+     * Constructor for AuthorIndex.
+     * Initializes the index as empty.
+     */
+    AuthorIndex() {
+        authors = new TreeMap<>();
+    }
+
+    /**
+     * Adds a node under the normalized author of its library item.
+     * @param node The LibraryItemNode to index.
+     */
+    void add(LibraryItemNode node) {
+        String key = CatalogText.normalize(node.libraryItem.getAuthor());
+        LinkedHashSet<LibraryItemNode> nodes = authors.get(key);
+        if (nodes == null) {
+            nodes = new LinkedHashSet<>();
+            authors.put(key, nodes);
+        }
+        nodes.add(node);
+    }
+
+    /**
+     * Removes a node from the index. The author is dropped once it has no items left.
+     * @param node The LibraryItemNode to remove.
+     */
+    void remove(LibraryItemNode node) {
+        String key = CatalogText.normalize(node.libraryItem.getAuthor());
+        LinkedHashSet<LibraryItemNode> nodes = authors.get(key);
+        if (nodes != null) {
+            nodes.remove(node);
+            if (nodes.isEmpty()) {
+                authors.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Finds all nodes by an author, in the order they were added.
+     * @param author The author name; case, accents and extra spaces are ignored.
+     * @return The matching nodes, or an empty list if there are none.
+     */
+    List<LibraryItemNode> findByAuthor(String author) {
+        LinkedHashSet<LibraryItemNode> nodes = authors.get(CatalogText.normalize(author));
+        return nodes == null ? new ArrayList<LibraryItemNode>() : new ArrayList<>(nodes);
+    }
+
+    /**
+     * Finds the nodes of all authors whose normalized name starts with a prefix.
+     * Results are ordered by author name, then by the order the items were added.
+     * @param prefix The beginning of the author name.
+     * @param limit The maximum number of nodes to return.
+     * @return Up to limit matching nodes.
+     */
+    List<LibraryItemNode> findByAuthorPrefix(String prefix, int limit) {
+        String from = CatalogText.normalize(prefix);
+        List<LibraryItemNode> result = new ArrayList<>();
+        for (Map.Entry<String, LinkedHashSet<LibraryItemNode>> entry : authors.tailMap(from, true).entrySet()) {
+            if (!entry.getKey().startsWith(from)) {
+                break;
+            }
+            for (LibraryItemNode node : entry.getValue()) {
+                if (result.size() == limit) {
+                    return result;
+                }
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of distinct authors in the index.
+     */
+    int authorCount() {
+        return authors.size();
+    }
+}
@@ -16,6 +16,13 @@ class Book extends LibraryItem {
         this.publisher = publisher;
     }
 
+    /**
+     * @return The publisher of the book.
+     */
+    public String getPublisher() {
+        return publisher;
+    }
+
     /**
      * Displays the book's information including title, author, stock, and publisher.
      */
@@ -1,53 +1,57 @@
 /**
- * Represents a borrower in the library system. 
- * Can borrow multiple library items (up to a defined maximum).
+ * Represents a borrower in the library system.
+ * Each account has its own BorrowerPolicy, which limits how many items the
+ * borrower can have out and for how long. The loans themselves hang off the
+ * borrower's node in the BorrowerList, which also checks the limit.
  */
 class Borrower implements Displayable {
+    private final int id;
     private String name;
-    private LibraryItem[] borrowedItems;
-    private int numBorrowedItems;
-    private static final int MAX_BORROWED_ITEMS = 10;
+    private BorrowerPolicy policy;
 
     /**
      * Constructor for the Borrower class.
-     * Initializes the borrower with a name and an empty list of borrowed items.
+     * Initializes the borrower with a name and the default policy.
+     * @param id The id of the borrower in the BorrowerRegistry.
      * @param name The name of the borrower.
      */
-    public Borrower(String name) {
+    public Borrower(int id, String name) {
+        this(id, name, BorrowerPolicy.getDefault());
+    }
+
+    /**
+     * Constructor for the Borrower class.
+     * Initializes the borrower with a name and a policy.
+     * @param id The id of the borrower in the BorrowerRegistry.
+     * @param name The name of the borrower.
+     * @param policy The lending rules of the borrower's account.
+     */
+    public Borrower(int id, String name, BorrowerPolicy policy) {
+        this.id = id;
         this.name = name;
-        this.borrowedItems = new LibraryItem[MAX_BORROWED_ITEMS];
-        this.numBorrowedItems = 0;
+        this.policy = policy;
+    }
+
+    /**
+     * @return The lending rules of the borrower's account.
+     */
+    public BorrowerPolicy getPolicy() {
+        return policy;
     }
 
     /**
-     * Adds a library item to the borrower's list of borrowed items.
-     * Checks if the maximum number of borrowed items has been reached. 
-     * @param item The LibraryItem to be added to the borrowed items list.
+     * Changes the type of the borrower's account. Items already out keep their due dates.
+     * @param policy The new lending rules of the borrower's account.
      */
-    public void addBorrowedItem(LibraryItem item) {
-        if (numBorrowedItems < MAX_BORROWED_ITEMS) {
-            borrowedItems[numBorrowedItems++] = item;
-        } else {
-            System.out.println("Error: Maximum borrowed items reached for " + name);
-        }
+    public void setPolicy(BorrowerPolicy policy) {
+        this.policy = policy;
     }
 
     /**
-     * Removes a library item from the borrower's list of borrowed items.
-     * @param item The LibraryItem to be removed from the borrowed items list.
+     * @return The id of the borrower in the BorrowerRegistry.
      */
-    public void removeBorrowedItem(LibraryItem item) {
-        for (int i = 0; i < numBorrowedItems; i++) {
-            if (borrowedItems[i] == item) {
-                // Shift items to the left to fill the gap
-                for (int j = i; j < numBorrowedItems - 1; j++) {
-                    borrowedItems[j] = borrowedItems[j + 1];
-                }
-                numBorrowedItems--;
-                return;
-            }
-        }
-        System.out.println("Error: Item " + item.getTitle() + " not found in borrowed items for " + name);
+    public int getId() {
+        return id;
     }
 
     /**
@@ -58,21 +62,12 @@ class Borrower implements Displayable {
     }
 
     /**
-     * Displays the borrower's information, including their name and the list of borrowed items.
+     * Displays the borrower's information, including their name and account type.
      */
     @Override
     public void displayInfo() {
-        System.out.println("Name: " + name);
-        if (numBorrowedItems > 0) {
-            System.out.println("Borrowed Items:");
-            for (LibraryItem item : borrowedItems) {
-                if (item != null) {
-                    System.out.println("- " + item.getTitle() + " (Not Returned Yet)");
-                }
-            }
-        } else {
-            System.out.println("No borrowed items.");
-        }
+        System.out.println("Name: " + name + " (" + policy.getName() + " account, up to "
+                + policy.getMaxLoans() + " items for " + policy.getLoanDays() + " days)");
     }
 
     /**
@@ -82,4 +77,4 @@ class Borrower implements Displayable {
     public String getTitle() {
         return name;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+/**
+ * Lending rules for a kind of borrower account.
+ * A standard account can hold 10 items at a time, like the library always
+ * allowed, for 14 days each, and an institutional account can hold 1000
+ * for 28 days each.
+ *
+ * Every Borrower has its own policy, and an admin can change the type of an
+ * account. The policy given to new borrowers is read from the system property
+ * library.borrowerPolicy ("standard" or "institutional"), and the property
+ * library.maxLoans overrides its limit, e.g. java -Dlibrary.maxLoans=25 Main.
+ */
+class BorrowerPolicy {
+    static final BorrowerPolicy STANDARD = new BorrowerPolicy("Standard", 10, 14);
+    static final BorrowerPolicy INSTITUTIONAL = new BorrowerPolicy("Institutional", 1000, 28);
+
+    private static final BorrowerPolicy DEFAULT = fromSystemProperties();
+
+    private final String name;
+    private final int maxLoans;
+    private final int loanDays;
+
+    /**
+     * Constructor for BorrowerPolicy.
+     * @param name The name of the account type.
+     * @param maxLoans The maximum number of items a borrower can have out at once.
+     * @param loanDays The number of days an item can be kept.
+     */
+    BorrowerPolicy(String name, int maxLoans, int loanDays) {
+        this.name = name;
+        this.maxLoans = maxLoans;
+        this.loanDays = loanDays;
+    }
+
+    /**
+     * @return The policy given to new borrowers.
+     */
+    static BorrowerPolicy getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Finds an account type by name, ignoring case.
+     * @param name "standard" or "institutional".
+     * @return The policy, or null if the name is not an account type.
+     */
+    static BorrowerPolicy forName(String name) {
+        if (name.equalsIgnoreCase(STANDARD.name)) {
+            return STANDARD;
+        }
+        if (name.equalsIgnoreCase(INSTITUTIONAL.name)) {
+            return INSTITUTIONAL;
+        }
+        return null;
+    }
+
+    /**
+     * Builds the default policy from the system properties.
+     * Unknown policy names and limits that are not positive numbers are
+     * reported and ignored.
+     * @return The configured policy, or STANDARD if nothing is configured.
+     */
+    private static BorrowerPolicy fromSystemProperties() {
+        BorrowerPolicy policy = STANDARD;
+        String type = System.getProperty("library.borrowerPolicy");
+        if (type != null) {
+            policy = forName(type.trim());
+            if (policy == null) {
+                System.out.println("Error: Unknown borrower policy " + type + ", using Standard.");
+                policy = STANDARD;
+            }
+        }
+        String limit = System.getProperty("library.maxLoans");
+        if (limit != null) {
+            try {
+                int maxLoans = Integer.parseInt(limit.trim());
+                if (maxLoans > 0) {
+                    return new BorrowerPolicy(policy.name, maxLoans, policy.loanDays);
+                }
+            } catch (NumberFormatException e) {
+                // Reported below.
+            }
+            System.out.println("Error: Invalid loan limit " + limit + ", using " + policy.maxLoans + ".");
+        }
+        return policy;
+    }
+
+    /**
+     * @return The name of the account type.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return The maximum number of items a borrower can have out at once.
+     */
+    int getMaxLoans() {
+        return maxLoans;
+    }
+
+    /**
+     * @return The number of days an item can be kept.
+     */
+    int getLoanDays() {
+        return loanDays;
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+/**
+ * Registry that gives every borrower name a dense int id, starting at 0.
+ *
+ * Each name is stored once, in an array indexed by id, and loans, queue
+ * entries and transactions keep only the id. Names are found through an
+ * open-addressing table of ids, so registering or looking up a name costs
+ * one hash of the name and comparisons only against names with the same hash.
+ * Ids are never reused.
+ */
+class BorrowerRegistry {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] names;
+    private int[] hashes;
+    private int count;
+    private int[] slots;
+
+    /**
+     * Constructor for BorrowerRegistry.
+     * Initializes the registry as empty.
+     */
+    BorrowerRegistry() {
+        names = new String[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+        count = 0;
+        slots = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Spreads the higher bits of the name's hash code into the lower bits,
+     * since the slot is chosen by masking with the table size.
+     * @param name The name to hash.
+     * @return The spread hash code.
+     */
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Finds the id of a name, registering the name if it is new.
+     * @param name The borrower name.
+     * @return The id of the name.
+     */
+    int register(String name) {
+        int h = hash(name);
+        int mask = slots.length - 1;
+        int i = h & mask;
+        while (slots[i] != 0) {
+            int id = slots[i] - 1;
+            if (hashes[id] == h && names[id].equals(name)) {
+                return id;
+            }
+            i = (i + 1) & mask;
+        }
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        int id = count++;
+        names[id] = name;
+        hashes[id] = h;
+        // Slots hold id + 1 so that 0 can mark an empty slot.
+        slots[i] = id + 1;
+        if (count * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Finds the id of a name without registering it.
+     * @param name The borrower name.
+     * @return The id of the name, or -1 if the name is not registered.
+     */
+    int findId(String name) {
+        if (name == null) {
+            return -1;
+        }
+        int h = hash(name);
+        int mask = slots.length - 1;
+        int i = h & mask;
+        while (slots[i] != 0) {
+            int id = slots[i] - 1;
+            if (hashes[id] == h && names[id].equals(name)) {
+                return id;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param id The borrower id.
+     * @return The name registered under the id, or null if there is none.
+     */
+    String getName(int id) {
+        return id >= 0 && id < count ? names[id] : null;
+    }
+
+    /**
+     * @return The number of registered names.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Doubles the slot table and reinserts every id.
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < count; id++) {
+            int i = hashes[id] & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id + 1;
+        }
+    }
+}
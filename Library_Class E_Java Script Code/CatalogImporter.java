@@ -0,0 +1,288 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Result of parsing one chunk of catalog lines.
+ */
+class ParsedChunk {
+    LibraryItem[] items;
+    int count;
+    int skipped;
+
+    /**
+     * Constructor for ParsedChunk.
+     * @param capacity The maximum number of items the chunk can hold.
+     */
+    ParsedChunk(int capacity) {
+        items = new LibraryItem[capacity];
+        count = 0;
+        skipped = 0;
+    }
+}
+
+/**
+ * Loads books and magazines from a CSV or TSV file into a LibraryItemList.
+ *
+ * Each line holds five fields: type, title, author, stock, and the publisher
+ * (for a book) or issue (for a magazine), optionally followed by a sixth
+ * field with the call number. The type is "Book" or "Magazine",
+ * or just "B" or "M". A header line whose first field is "type" and lines
+ * starting with '#' are ignored. Lines that cannot be parsed are skipped and counted.
+ *
+ * The file is read line by line on the calling thread and handed out in chunks
+ * to a pool of parser threads. Parsed chunks are appended to the list in file
+ * order, so the catalog ends up in the same order as the file.
+ */
+class CatalogImporter {
+    private static final int CHUNK_SIZE = 8192;
+
+    private final LibraryItemList itemList;
+    private final int threads;
+    private int importedCount;
+    private int skippedCount;
+    private long elapsedNanos;
+
+    /**
+     * Constructor for CatalogImporter.
+     * Uses one parser thread per available processor.
+     * @param itemList The LibraryItemList the items are added to.
+     */
+    CatalogImporter(LibraryItemList itemList) {
+        this(itemList, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor for CatalogImporter.
+     * @param itemList The LibraryItemList the items are added to.
+     * @param threads The number of parser threads.
+     */
+    CatalogImporter(LibraryItemList itemList, int threads) {
+        this.itemList = itemList;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Imports every item in a CSV or TSV file.
+     * The file is treated as TSV if its name ends with ".tsv" or its first line contains a tab.
+     * @param path The path of the file to import.
+     * @return The number of items imported.
+     * @throws IOException If the file cannot be read.
+     */
+    int importFile(String path) throws IOException {
+        importedCount = 0;
+        skippedCount = 0;
+        long start = System.nanoTime();
+
+        ExecutorService parsers = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<ParsedChunk>> pending = new ArrayDeque<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line != null && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            char delimiter = path.toLowerCase().endsWith(".tsv") || (line != null && line.indexOf('\t') >= 0) ? '\t' : ',';
+            if (line != null && splitLine(line, delimiter).get(0).trim().equalsIgnoreCase("type")) {
+                line = reader.readLine();
+            }
+
+            List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (line != null) {
+                chunk.add(line);
+                if (chunk.size() == CHUNK_SIZE) {
+                    pending.add(parsers.submit(new ChunkParser(chunk, delimiter)));
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                    // Keep a bounded number of chunks in flight so a huge file is not held in memory.
+                    if (pending.size() >= threads * 2) {
+                        append(pending.poll());
+                    }
+                }
+                line = reader.readLine();
+            }
+            if (!chunk.isEmpty()) {
+                pending.add(parsers.submit(new ChunkParser(chunk, delimiter)));
+            }
+            while (!pending.isEmpty()) {
+                append(pending.poll());
+            }
+        } finally {
+            parsers.shutdownNow();
+            elapsedNanos = System.nanoTime() - start;
+        }
+        return importedCount;
+    }
+
+    /**
+     * Waits for a parsed chunk and appends its items to the list.
+     * @param future The pending result of a ChunkParser.
+     * @throws IOException If the import was interrupted or a parser failed.
+     */
+    private void append(Future<ParsedChunk> future) throws IOException {
+        ParsedChunk parsed;
+        try {
+            parsed = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse catalog file", e.getCause());
+        }
+        for (int i = 0; i < parsed.count; i++) {
+            itemList.addItem(parsed.items[i]);
+        }
+        importedCount += parsed.count;
+        skippedCount += parsed.skipped;
+    }
+
+    /**
+     * @return The number of items added by the last import.
+     */
+    int getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * @return The number of lines skipped by the last import because they could not be parsed.
+     */
+    int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return The duration of the last import in seconds.
+     */
+    double getElapsedSeconds() {
+        return elapsedNanos / 1_000_000_000.0;
+    }
+
+    /**
+     * @return The import rate of the last import in items per second.
+     */
+    double getItemsPerSecond() {
+        return elapsedNanos == 0 ? 0 : importedCount / getElapsedSeconds();
+    }
+
+    /**
+     * Parses one catalog line into a Book or Magazine.
+     * @param line The line to parse.
+     * @param delimiter The field delimiter.
+     * @return The parsed LibraryItem, or null if the line is malformed.
+     */
+    static LibraryItem parseLine(String line, char delimiter) {
+        List<String> fields = splitLine(line, delimiter);
+        if (fields.size() != 5 && fields.size() != 6) {
+            return null;
+        }
+        String type = fields.get(0).trim();
+        String title = fields.get(1).trim();
+        String author = fields.get(2).trim();
+        String extra = fields.get(4).trim();
+        int stock;
+        try {
+            stock = Integer.parseInt(fields.get(3).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (title.isEmpty() || stock < 0) {
+            return null;
+        }
+        LibraryItem item;
+        if (type.equalsIgnoreCase("Book") || type.equalsIgnoreCase("B")) {
+            item = new Book(title, author, stock, extra);
+        } else if (type.equalsIgnoreCase("Magazine") || type.equalsIgnoreCase("M")) {
+            item = new Magazine(title, author, stock, extra);
+        } else {
+            return null;
+        }
+        if (fields.size() == 6) {
+            item.setCallNumber(fields.get(5));
+        }
+        return item;
+    }
+
+    /**
+     * Splits a line into fields. Fields may be wrapped in double quotes, in which
+     * case they can contain the delimiter and a doubled quote stands for one quote.
+     * @param line The line to split.
+     * @param delimiter The field delimiter.
+     * @return The fields of the line.
+     */
+    static List<String> splitLine(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(5);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Task that parses a chunk of lines on a parser thread.
+     */
+    private static class ChunkParser implements Callable<ParsedChunk> {
+        private final List<String> lines;
+        private final char delimiter;
+
+        /**
+         * Constructor for ChunkParser.
+         * @param lines The lines to parse.
+         * @param delimiter The field delimiter.
+         */
+        ChunkParser(List<String> lines, char delimiter) {
+            this.lines = lines;
+            this.delimiter = delimiter;
+        }
+
+        /**
+         * Parses every line of the chunk, skipping blank and comment lines.
+         * @return The parsed items and the number of malformed lines.
+         */
+        @Override
+        public ParsedChunk call() {
+            ParsedChunk parsed = new ParsedChunk(lines.size());
+            for (String line : lines) {
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                LibraryItem item = parseLine(line, delimiter);
+                if (item == null) {
+                    parsed.skipped++;
+                } else {
+                    parsed.items[parsed.count++] = item;
+                }
+            }
+            return parsed;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Hash map from int keys to objects, using open addressing with linear probing.
+ * Keys are stored in an int array, so nothing is boxed, and removal shifts
+ * the following entries back instead of leaving tombstones behind.
+ * A slot is empty when its value is null, so null values cannot be stored.
+ * @param <V> The type of the values.
+ */
+class IntObjectMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Constructor for IntObjectMap.
+     * Initializes the map as empty.
+     */
+    IntObjectMap() {
+        keys = new int[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+        size = 0;
+    }
+
+    /**
+     * Spreads a key over the table with a multiplicative hash, so that
+     * consecutive keys do not fill consecutive slots.
+     * @param key The key.
+     * @return The home slot of the key.
+     */
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Finds the value of a key.
+     * @param key The key to look up.
+     * @return The value, or null if the key is not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the value of a key, replacing any previous value.
+     * @param key The key.
+     * @param value The value; must not be null.
+     * @return The previous value, or null if the key was not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("IntObjectMap cannot store null values");
+        }
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if (size > keys.length - (keys.length >>> 2)) {
+            resize();
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key from the map.
+     * @param key The key to remove.
+     * @return The value it had, or null if the key was not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of keys in the map.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Empties a slot and moves later entries of the same probe run into it,
+     * so that every remaining key can still be reached from its home slot.
+     * @param hole The slot to empty.
+     */
+    private void shiftBack(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                break;
+            }
+            int home = slot(keys[i]);
+            // The entry may move into the hole only if its home slot is not between the hole and i.
+            boolean reachable = hole <= i ? (home <= hole || home > i) : (home <= hole && home > i);
+            if (reachable) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        values[hole] = null;
+    }
+
+    /**
+     * Doubles the table and reinserts the entries.
+     */
+    private void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldKeys[j]);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
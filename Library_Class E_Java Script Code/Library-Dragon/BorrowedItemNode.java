@@ -1,54 +1,212 @@
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
 /**
  * Node for a doubly linked list representing a list of Borrowed Items.
+ * The node is also linked into the loan chain of its borrower's BorrowerNode,
+ * which is the only record of the borrower's loans. Within its
+ * TitleLoans the node is linked into the chain of all loans of the title and
+ * into the chain of the loans of the same borrower for that title. The node
+ * is scheduled on the due-date TimingWheel of the list until it is returned.
  */
-class BorrowedItemNode {
+class BorrowedItemNode extends TimedNode {
     LibraryItem item;
-    String borrowerName;
+    int copyId;
+    int borrowerId;
     String borrowDate;
+    long dueDate;
     BorrowedItemNode next;
     BorrowedItemNode prev;
+    BorrowerNode owner;
+    BorrowedItemNode nextLoan;
+    BorrowedItemNode prevLoan;
+    TitleLoans titleLoans;
+    BorrowedItemNode nextOfTitle;
+    BorrowedItemNode prevOfTitle;
+    BorrowedItemNode nextSameBorrower;
+    BorrowedItemNode prevSameBorrower;
 
     /**
      * Constructor for BorrowedItemNode.
      * @param item The LibraryItem that has been borrowed.
-     * @param borrowerName The name of the borrower.
+     * @param copyId The copy id of the copy that has been borrowed.
+     * @param borrowerId The id of the borrower.
      * @param borrowDate The date the item was borrowed.
+     * @param dueDate The time the item is due back, in epoch milliseconds.
      */
-    BorrowedItemNode(LibraryItem item, String borrowerName, String borrowDate) {
+    BorrowedItemNode(LibraryItem item, int copyId, int borrowerId, String borrowDate, long dueDate) {
         this.item = item;
-        this.borrowerName = borrowerName;
+        this.copyId = copyId;
+        this.borrowerId = borrowerId;
         this.borrowDate = borrowDate;
+        this.dueDate = dueDate;
         next = null;
         prev = null;
+        owner = null;
+        nextLoan = null;
+        prevLoan = null;
+        titleLoans = null;
+        nextOfTitle = null;
+        prevOfTitle = null;
+        nextSameBorrower = null;
+        prevSameBorrower = null;
+    }
+}
+
+/**
+ * The outstanding loans of one title, oldest first.
+ * The first loan of each borrower is kept in a map by borrower id, and further
+ * loans of the same title by that borrower follow it in its same-borrower chain,
+ * so the loan of a borrower is found and unlinked in O(1).
+ */
+class TitleLoans {
+    final String key;
+    BorrowedItemNode first;
+    BorrowedItemNode last;
+    int count;
+    final IntObjectMap<BorrowedItemNode> byBorrower;
+
+    /**
+     * Constructor for TitleLoans.
+     * @param key The normalized title.
+     */
+    TitleLoans(String key) {
+        this.key = key;
+        first = null;
+        last = null;
+        count = 0;
+        byBorrower = new IntObjectMap<>();
+    }
+
+    /**
+     * Links a loan at the end of the title chain and of its borrower's chain.
+     * @param node The BorrowedItemNode of the loan.
+     */
+    void add(BorrowedItemNode node) {
+        node.titleLoans = this;
+        node.prevOfTitle = last;
+        if (last == null) {
+            first = node;
+        } else {
+            last.nextOfTitle = node;
+        }
+        last = node;
+        count++;
+
+        BorrowedItemNode earliest = byBorrower.get(node.borrowerId);
+        if (earliest == null) {
+            byBorrower.put(node.borrowerId, node);
+            earliest = node;
+        } else {
+            // prevSameBorrower of the first loan points at the latest one, so the end is found in O(1).
+            BorrowedItemNode latest = earliest.prevSameBorrower;
+            latest.nextSameBorrower = node;
+            node.prevSameBorrower = latest;
+        }
+        earliest.prevSameBorrower = node;
+    }
+
+    /**
+     * Unlinks a loan from the title chain and from its borrower's chain.
+     * @param node The BorrowedItemNode of the loan.
+     */
+    void remove(BorrowedItemNode node) {
+        if (node.prevOfTitle == null) {
+            first = node.nextOfTitle;
+        } else {
+            node.prevOfTitle.nextOfTitle = node.nextOfTitle;
+        }
+        if (node.nextOfTitle == null) {
+            last = node.prevOfTitle;
+        } else {
+            node.nextOfTitle.prevOfTitle = node.prevOfTitle;
+        }
+        count--;
+
+        BorrowedItemNode earliest = byBorrower.get(node.borrowerId);
+        if (earliest == node) {
+            BorrowedItemNode next = node.nextSameBorrower;
+            if (next == null) {
+                byBorrower.remove(node.borrowerId);
+            } else {
+                next.prevSameBorrower = node.prevSameBorrower;
+                byBorrower.put(node.borrowerId, next);
+            }
+        } else {
+            node.prevSameBorrower.nextSameBorrower = node.nextSameBorrower;
+            BorrowedItemNode following = node.nextSameBorrower != null ? node.nextSameBorrower : earliest;
+            following.prevSameBorrower = node.prevSameBorrower;
+        }
+        node.titleLoans = null;
+        node.nextOfTitle = null;
+        node.prevOfTitle = null;
+        node.nextSameBorrower = null;
+        node.prevSameBorrower = null;
     }
 }
 
 /**
  * Represents a list of borrowed items using a doubly linked list. 
  * Provides methods for borrowing, returning, and displaying borrowed items.
+ * Every loan is for one copy, and an array indexed by copy id finds the loan
+ * of a copy directly when it is returned by barcode. The loans are also grouped
+ * by normalized title, so the loan of a borrower for a title, or all outstanding
+ * loans of a title, are found without scanning the list. Due dates are kept
+ * on a TimingWheel with one-minute ticks, which moves loans to its expired
+ * list as they become overdue, so finding the overdue loans costs
+ * O(overdue) rather than O(all loans).
  */
 class BorrowedItemList {
+    private static final long DUE_DATE_TICK_MILLIS = 60_000L;
+
     BorrowedItemNode head;
     BorrowedItemNode tail;
+    private BorrowedItemNode[] loansByCopy;
+    private final HashMap<String, TitleLoans> loansByTitle;
+    private final TimingWheel<BorrowedItemNode> dueDates;
+    private final BorrowerRegistry registry;
 
     /**
      * Constructor for BorrowedItemList. 
      * Initializes the list as empty.
+     * @param registry The BorrowerRegistry used to show borrower names.
      */
-    BorrowedItemList() {
+    BorrowedItemList(BorrowerRegistry registry) {
+        this.registry = registry;
         head = null;
         tail = null;
+        loansByCopy = new BorrowedItemNode[16];
+        loansByTitle = new HashMap<>();
+        dueDates = new TimingWheel<>(DUE_DATE_TICK_MILLIS, System.currentTimeMillis());
     }
 
     /**
      * Adds a new BorrowedItemNode to the end of the list, representing a borrowed item.
      * @param item The LibraryItem that has been borrowed.
-     * @param borrowerName The name of the borrower.
+     * @param copyId The copy id of the copy that has been borrowed.
+     * @param borrowerId The id of the borrower.
      * @param borrowDate The date the item was borrowed.
+     * @param dueDate The time the item is due back, in epoch milliseconds.
      * @return The newly created BorrowedItemNode.
      */
-    BorrowedItemNode borrowItem(LibraryItem item, String borrowerName, String borrowDate) {
-        BorrowedItemNode newNode = new BorrowedItemNode(item, borrowerName, borrowDate);
+    BorrowedItemNode borrowItem(LibraryItem item, int copyId, int borrowerId, String borrowDate, long dueDate) {
+        BorrowedItemNode newNode = new BorrowedItemNode(item, copyId, borrowerId, borrowDate, dueDate);
+        dueDates.schedule(newNode, dueDate);
+        if (copyId >= loansByCopy.length) {
+            loansByCopy = Arrays.copyOf(loansByCopy, Math.max(copyId + 1, loansByCopy.length * 2));
+        }
+        loansByCopy[copyId] = newNode;
+        String key = CatalogText.normalize(item.getTitle());
+        TitleLoans loans = loansByTitle.get(key);
+        if (loans == null) {
+            loans = new TitleLoans(key);
+            loansByTitle.put(key, loans);
+        }
+        loans.add(newNode);
         if (head == null) {
             head = newNode;
             tail = newNode;
@@ -61,59 +219,124 @@ class BorrowedItemList {
     }
     
     /**
-     * Returns a borrowed item from the list.
+     * Returns a borrowed item from the list by its title.
      * 
-     * This method searches for the item by title. If found, it removes the item 
-     * from the borrowed list and returns the corresponding BorrowedItemNode. 
-     * If the item is not found, it returns null.
-     * 
-     * The method handles cases where the removed item is the head or tail of the list,
-     * ensuring proper updates to the list pointers.
+     * This method takes the oldest outstanding loan of the title, whoever borrowed it. 
+     * If found, it removes the loan from the borrowed list and returns the 
+     * corresponding BorrowedItemNode. If the item is not found, it returns null.
      *
      * @param title The title of the item to be returned.
      * @return The BorrowedItemNode of the returned item, or null if not found.
      */
     BorrowedItemNode returnItem(String title) {
-        if (head == null) {
+        TitleLoans loans = loansByTitle.get(CatalogText.normalize(title));
+        if (loans == null) {
             return null;
         }
-        if (head.item.getTitle().equals(title)) {
-            BorrowedItemNode returnedItem = head;
-            head = head.next;
-            if (head != null) {
-                head.prev = null;
-            } else {
-                tail = null;
-            }
-            return returnedItem;
+        BorrowedItemNode node = loans.first;
+        removeByNode(node);
+        return node;
+    }
+
+    /**
+     * Returns the loan of a title by a borrower, without searching the list.
+     * If the borrower has several copies of the title, the oldest loan is returned.
+     * @param borrowerId The id of the borrower.
+     * @param title The title of the item to be returned.
+     * @return The BorrowedItemNode of the returned item, or null if the borrower has no such loan.
+     */
+    BorrowedItemNode returnItem(int borrowerId, String title) {
+        BorrowedItemNode node = findLoan(borrowerId, title);
+        if (node != null) {
+            removeByNode(node);
         }
-        BorrowedItemNode current = head;
-        while (current.next != null) {
-            if (current.next.item.getTitle().equals(title)) {
-                BorrowedItemNode returnedItem = current.next;
-                if (current.next == tail) {
-                    tail = current;
-                } else {
-                    current.next.next.prev = current;
-                }
-                current.next = current.next.next;
-                return returnedItem;
+        return node;
+    }
+
+    /**
+     * Finds the loan of a title by a borrower.
+     * @param borrowerId The id of the borrower.
+     * @param title The title of the item.
+     * @return The oldest BorrowedItemNode of the borrower for the title, or null if there is none.
+     */
+    BorrowedItemNode findLoan(int borrowerId, String title) {
+        TitleLoans loans = loansByTitle.get(CatalogText.normalize(title));
+        return loans == null ? null : loans.byBorrower.get(borrowerId);
+    }
+
+    /**
+     * Lists the outstanding loans of a title, oldest first.
+     * @param title The title of the item.
+     * @return The BorrowedItemNodes of the title; empty if no copy of it is out.
+     */
+    List<BorrowedItemNode> findLoans(String title) {
+        List<BorrowedItemNode> result = new ArrayList<>();
+        TitleLoans loans = loansByTitle.get(CatalogText.normalize(title));
+        if (loans != null) {
+            for (BorrowedItemNode node = loans.first; node != null; node = node.nextOfTitle) {
+                result.add(node);
             }
-            current = current.next;
         }
-        return null;
+        return result;
+    }
+
+    /**
+     * Counts the outstanding loans of a title.
+     * @param title The title of the item.
+     * @return The number of copies of the title that are out.
+     */
+    int countLoans(String title) {
+        TitleLoans loans = loansByTitle.get(CatalogText.normalize(title));
+        return loans == null ? 0 : loans.count;
+    }
+
+    /**
+     * Returns a borrowed copy by its copy id, without searching the list.
+     * @param copyId The copy id on the copy's barcode.
+     * @return The BorrowedItemNode of the returned copy, or null if the copy is not out.
+     */
+    BorrowedItemNode returnCopy(int copyId) {
+        BorrowedItemNode node = findByCopy(copyId);
+        if (node != null) {
+            removeByNode(node);
+        }
+        return node;
+    }
+
+    /**
+     * Finds the loan of a copy.
+     * @param copyId The copy id.
+     * @return The BorrowedItemNode of the copy, or null if the copy is not out.
+     */
+    BorrowedItemNode findByCopy(int copyId) {
+        if (copyId < 0 || copyId >= loansByCopy.length) {
+            return null;
+        }
+        return loansByCopy[copyId];
     }
     
     /**
      * Removes a specific BorrowedItemNode from the list. 
      * Handles cases where the node is the head or tail, 
-     * and ensures the list remains properly connected.
+     * and ensures the list remains properly connected. 
+     * Removing a node that is no longer in the list does nothing.
      * @param node The BorrowedItemNode to be removed.
      */
     void removeByNode(BorrowedItemNode node) {
-        if (node == null) {
+        if (node == null || (node != head && node.prev == null)) {
             return;
         }
+        if (node.copyId >= 0 && node.copyId < loansByCopy.length && loansByCopy[node.copyId] == node) {
+            loansByCopy[node.copyId] = null;
+        }
+        dueDates.cancel(node);
+        TitleLoans loans = node.titleLoans;
+        if (loans != null) {
+            loans.remove(node);
+            if (loans.count == 0) {
+                loansByTitle.remove(loans.key);
+            }
+        }
     
         if (node == head) {
             if (head == tail) { 
@@ -143,9 +366,53 @@ class BorrowedItemList {
                 node.next.prev = prevNode;
             }
         }
+        node.next = null;
+        node.prev = null;
     }
     
 
+    /**
+     * Finds the loans that are overdue, moving the loans that became overdue
+     * since the last call to the overdue list first.
+     * @param nowMillis The current time, in epoch milliseconds.
+     * @return The overdue loans, in the order they became overdue.
+     */
+    List<BorrowedItemNode> findOverdue(long nowMillis) {
+        dueDates.advance(nowMillis);
+        return dueDates.expired();
+    }
+
+    /**
+     * Counts the loans that are overdue.
+     * @param nowMillis The current time, in epoch milliseconds.
+     * @return The number of overdue loans.
+     */
+    int countOverdue(long nowMillis) {
+        dueDates.advance(nowMillis);
+        return dueDates.expiredCount();
+    }
+
+    /**
+     * Displays the loans that are overdue.
+     * @param nowMillis The current time, in epoch milliseconds.
+     */
+    void displayOverdue(long nowMillis) {
+        List<BorrowedItemNode> overdue = findOverdue(nowMillis);
+        if (overdue.isEmpty()) {
+            System.out.println("No overdue items.");
+            return;
+        }
+        System.out.println(overdue.size() + " overdue items:");
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
+        for (BorrowedItemNode node : overdue) {
+            long days = (nowMillis - node.dueDate) / (24L * 60 * 60 * 1000);
+            System.out.println("Title: " + node.item.getTitle() + ", Copy: " + node.copyId
+                    + ", Borrowed By: " + registry.getName(node.borrowerId)
+                    + ", Due Date: " + formatter.format(new Date(node.dueDate))
+                    + ", Days Overdue: " + days);
+        }
+    }
+
     /**
      * Displays all borrowed items in the list.
      */
@@ -155,10 +422,12 @@ class BorrowedItemList {
             System.out.println("No borrowed items.");
             return;
         }
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
         while (current != null) {
             System.out.println("Borrowed Item:");
             current.item.displayInfo();
-            System.out.println("Borrowed By: " + current.borrowerName + ", Borrow Date: " + current.borrowDate);
+            System.out.println("Copy: " + current.copyId + ", Borrowed By: " + registry.getName(current.borrowerId)
+                    + ", Borrow Date: " + current.borrowDate + ", Due Date: " + formatter.format(new Date(current.dueDate)));
             current = current.next;
         }
     }
@@ -1,21 +1,28 @@
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Node for a Double Circular Linked List representing a list of Borrowers.
- * Each node holds a Borrower and a reference to the BorrowedItemNode associated with them.
+ * Each node holds a Borrower and the head of a doubly linked chain of the
+ * BorrowedItemNodes the borrower currently has out.
  */
 class BorrowerNode {
     Borrower borrower;
-    BorrowedItemNode borrowedItemNode; // Reference to the BorrowedItemNode 
+    BorrowedItemNode firstLoan;
+    BorrowedItemNode lastLoan;
+    int loanCount;
     BorrowerNode next;
     BorrowerNode prev;
 
     /**
      * Constructor for BorrowerNode.
      * @param borrower The Borrower object to be stored in the node.
-     * @param borrowedItemNode The BorrowedItemNode associated with the borrower.
      */
-    BorrowerNode(Borrower borrower, BorrowedItemNode borrowedItemNode) {
+    BorrowerNode(Borrower borrower) {
         this.borrower = borrower;
-        this.borrowedItemNode = borrowedItemNode; 
+        firstLoan = null;
+        lastLoan = null;
+        loanCount = 0;
         next = null;
         prev = null;
     }
@@ -24,16 +31,27 @@ class BorrowerNode {
 /**
  * Represents a list of borrowers using a Double Circular Linked List. 
  * Provides methods for adding, removing, finding, and displaying borrowers.
+ * Nodes are also kept in an IntObjectMap by borrower id, and names are turned
+ * into ids by the BorrowerRegistry, so finding, adding and removing a borrower
+ * do not walk the list, while the list keeps the display order.
+ * Each borrower appears once, and their loans hang off their node, so the
+ * list grows with the number of borrowers rather than the number of loans.
+ * The length of the chain is what the borrower's policy limits.
  */
 class BorrowerList {
     private BorrowerNode head;
+    private final BorrowerRegistry registry;
+    private final IntObjectMap<BorrowerNode> nodesById;
 
     /**
      * Constructor for BorrowerList.
      * Initializes the list with an empty head.
+     * @param registry The BorrowerRegistry that gives borrower names their ids.
      */
-    BorrowerList() {
+    BorrowerList(BorrowerRegistry registry) {
         head = null;
+        this.registry = registry;
+        nodesById = new IntObjectMap<>();
     }
 
     /**
@@ -42,28 +60,51 @@ class BorrowerList {
      * @return The Borrower object if found, null otherwise.
      */
     Borrower findBorrower(String name) {
-        BorrowerNode current = head;
-        if (head == null) {
-            return null;
-        }
-        do {
-            if (current.borrower.getName().equals(name)) {
-                return current.borrower;
-            }
-            current = current.next;
-        } while (current != head);
-        return null;
+        BorrowerNode node = findBorrowerNode(name);
+        return node == null ? null : node.borrower;
     }
 
     /**
-     * Adds a borrower to the list.
+     * Finds a borrower in the list by id.
+     * @param borrowerId The id of the borrower to search for.
+     * @return The Borrower object if found, null otherwise.
+     */
+    Borrower findBorrower(int borrowerId) {
+        BorrowerNode node = nodesById.get(borrowerId);
+        return node == null ? null : node.borrower;
+    }
+
+    /**
+     * Finds the node of a borrower in the list by name.
+     * @param name The name of the borrower to search for.
+     * @return The BorrowerNode if found, null otherwise.
+     */
+    BorrowerNode findBorrowerNode(String name) {
+        int borrowerId = registry.findId(name);
+        return borrowerId < 0 ? null : nodesById.get(borrowerId);
+    }
+
+    /**
+     * @param borrowerId The id of a borrower.
+     * @return The name registered under the id, even if the borrower is no longer in the list.
+     */
+    String getBorrowerName(int borrowerId) {
+        return registry.getName(borrowerId);
+    }
+
+    /**
+     * Adds a borrower to the list, unless a borrower with the same id is already in it.
      * If the list is empty, the new borrower becomes the head. 
      * Otherwise, the borrower is added to the end of the list, maintaining the circular structure.
      * @param borrower The Borrower object to add to the list.
-     * @param borrowedItemNode The BorrowedItemNode associated with the borrower.
+     * @return The node of the borrower, new or existing.
      */
-    void addBorrower(Borrower borrower, BorrowedItemNode borrowedItemNode) {
-        BorrowerNode newNode = new BorrowerNode(borrower, borrowedItemNode);
+    BorrowerNode addBorrower(Borrower borrower) {
+        BorrowerNode existing = nodesById.get(borrower.getId());
+        if (existing != null) {
+            return existing;
+        }
+        BorrowerNode newNode = new BorrowerNode(borrower);
 
         if (head == null) {
             head = newNode;
@@ -76,41 +117,128 @@ class BorrowerList {
             newNode.next = head;
             head.prev = newNode;
         }
+        nodesById.put(borrower.getId(), newNode);
+        return newNode;
     }
 
     /**
-     * Removes a borrower from the list by name.
-     * @param name The name of the borrower to be removed.
+     * Checks whether a borrower can take out another item.
+     * @param borrowerId The id of the borrower.
+     * @return True if the borrower is below the limit of their policy, or is not in the list yet.
      */
-    void removeBorrower(String name) {
-        if (head == null) {
+    boolean canBorrow(int borrowerId) {
+        BorrowerNode node = nodesById.get(borrowerId);
+        return node == null || node.loanCount < node.borrower.getPolicy().getMaxLoans();
+    }
+
+    /**
+     * @param borrowerId The id of the borrower.
+     * @return The number of items the borrower has out.
+     */
+    int getLoanCount(int borrowerId) {
+        BorrowerNode node = nodesById.get(borrowerId);
+        return node == null ? 0 : node.loanCount;
+    }
+
+    /**
+     * Attaches a loan to the end of the loan chain of its borrower.
+     * @param loan The BorrowedItemNode of the loan; its borrower must be in the list.
+     */
+    void addLoan(BorrowedItemNode loan) {
+        BorrowerNode node = nodesById.get(loan.borrowerId);
+        if (node == null) {
+            System.out.println("Error: Borrower " + registry.getName(loan.borrowerId) + " not found.");
             return;
         }
+        loan.owner = node;
+        loan.prevLoan = node.lastLoan;
+        loan.nextLoan = null;
+        if (node.lastLoan == null) {
+            node.firstLoan = loan;
+        } else {
+            node.lastLoan.nextLoan = loan;
+        }
+        node.lastLoan = loan;
+        node.loanCount++;
+    }
 
-        BorrowerNode current = head;
+    /**
+     * Detaches a loan from the loan chain of its borrower. The borrower stays in the list.
+     * @param loan The BorrowedItemNode of the loan.
+     */
+    void removeLoan(BorrowedItemNode loan) {
+        BorrowerNode node = loan.owner;
+        if (node == null) {
+            return;
+        }
+        if (loan.prevLoan == null) {
+            node.firstLoan = loan.nextLoan;
+        } else {
+            loan.prevLoan.nextLoan = loan.nextLoan;
+        }
+        if (loan.nextLoan == null) {
+            node.lastLoan = loan.prevLoan;
+        } else {
+            loan.nextLoan.prevLoan = loan.prevLoan;
+        }
+        loan.owner = null;
+        loan.nextLoan = null;
+        loan.prevLoan = null;
+        node.loanCount--;
+    }
 
-        do {
-            if (current.borrower.getName().equals(name)) {
-                if (current == head) {
-                    if (head.next == head) { // Only one node in the list
-                        head = null; 
-                    } else {
-                        head = head.next;
-                        head.prev = current.prev;
-                        current.prev.next = head;
-                    }
-                } else {
-                    current.prev.next = current.next;
-                    current.next.prev = current.prev;
-                }
-                return;
+    /**
+     * Finds all loans of a borrower, in the order they were made.
+     * @param name The name of the borrower.
+     * @return The BorrowedItemNodes of the borrower, or an empty list if the borrower is not found.
+     */
+    List<BorrowedItemNode> findLoans(String name) {
+        BorrowerNode node = findBorrowerNode(name);
+        List<BorrowedItemNode> loans = new ArrayList<>(node == null ? 0 : node.loanCount);
+        if (node != null) {
+            for (BorrowedItemNode loan = node.firstLoan; loan != null; loan = loan.nextLoan) {
+                loans.add(loan);
             }
-            current = current.next;
-        } while (current != head);
+        }
+        return loans;
+    }
+
+    /**
+     * Removes a borrower from the list by name, together with their loan chain.
+     * @param name The name of the borrower to be removed.
+     */
+    void removeBorrower(String name) {
+        BorrowerNode current = findBorrowerNode(name);
+        if (current == null) {
+            return;
+        }
+        if (current == head) {
+            if (head.next == head) { // Only one node in the list
+                head = null; 
+            } else {
+                head = head.next;
+                head.prev = current.prev;
+                current.prev.next = head;
+            }
+        } else {
+            current.prev.next = current.next;
+            current.next.prev = current.prev;
+        }
+        nodesById.remove(current.borrower.getId());
+        while (current.firstLoan != null) {
+            removeLoan(current.firstLoan);
+        }
     }
 
     /**
-     * Displays all borrowers in the list along with their borrowed item (if any).
+     * @return The number of borrowers in the list.
+     */
+    int size() {
+        return nodesById.size();
+    }
+
+    /**
+     * Displays all borrowers in the list along with their borrowed items (if any).
      */
     void displayBorrowers() {
         if (head == null) {
@@ -122,8 +250,19 @@ class BorrowerList {
 
         do {
             Borrower borrower = current.borrower;
-            String borrowedItemTitle = (current.borrowedItemNode == null) ? "None" : current.borrowedItemNode.item.getTitle();
-            System.out.println("Name: " + borrower.getName() + ", Borrowed Item: " + borrowedItemTitle);
+            StringBuilder borrowedItemTitles = new StringBuilder();
+            for (BorrowedItemNode loan = current.firstLoan; loan != null; loan = loan.nextLoan) {
+                if (borrowedItemTitles.length() > 0) {
+                    borrowedItemTitles.append(", ");
+                }
+                borrowedItemTitles.append(loan.item.getTitle()).append(" (Copy ").append(loan.copyId).append(')');
+            }
+            if (borrowedItemTitles.length() == 0) {
+                borrowedItemTitles.append("None");
+            }
+            System.out.println("Name: " + borrower.getName() + " (" + borrower.getPolicy().getName() + ", "
+                    + current.loanCount + " of " + borrower.getPolicy().getMaxLoans() + " items out)"
+                    + ", Borrowed Items: " + borrowedItemTitles);
             current = current.next;
         } while (current != head);
     }
@@ -0,0 +1,69 @@
+/**
+ * Interface for the alternative catalog backends measured by LibraryBenchmark.
+ *
+ * ColumnarCatalog and MappedCatalog store items outside of LibraryItem objects
+ * and identify them by int ids. They are benchmark-only: the console in Main
+ * and the LibraryItemList it uses keep their linked LibraryItem objects, so
+ * loans, holds and indexes never see these stores.
+ */
+interface CatalogStore {
+    /**
+     * Adds a book or magazine to the catalog and gives its copies copy ids.
+     * @param item The Book or Magazine to add. Its fields are copied into the store.
+     * @return The id of the new item, or -1 if it could not be added.
+     */
+    int addItem(LibraryItem item);
+
+    /**
+     * Finds an item by its title.
+     * @param title The title of the item to search for.
+     * @return The id of the item, or -1 if it is not in the catalog.
+     */
+    int findItem(String title);
+
+    /**
+     * Returns a view of an item through the LibraryItem API.
+     * @param id The item id.
+     * @return The view, or null if there is no live item with that id.
+     */
+    LibraryItem getItem(int id);
+
+    /**
+     * Removes an item by its title.
+     * If the item has multiple copies, one copy is taken out of circulation.
+     * If it's the last copy, the item is removed from the catalog.
+     * @param title The title of the item to be removed.
+     */
+    void removeItem(String title);
+
+    /**
+     * Takes one copy of an item out of stock and claims an available copy id.
+     * @param id The item id.
+     * @return The copy id of the claimed copy, or -1 if the item is out of stock or removed.
+     */
+    int claimCopy(int id);
+
+    /**
+     * Puts a claimed copy back on the shelf and into stock.
+     * @param id The item id.
+     * @param copyId The copy id returned by claimCopy.
+     * @return True if the copy was out, false if it is not one of the item's copies or is already in.
+     */
+    boolean returnCopy(int id, int copyId);
+
+    /**
+     * @param id The item id.
+     * @return The number of copies in stock.
+     */
+    int getStock(int id);
+
+    /**
+     * Displays all items in the catalog in id order.
+     */
+    void displayItems();
+
+    /**
+     * @return The number of items in the catalog.
+     */
+    int size();
+}
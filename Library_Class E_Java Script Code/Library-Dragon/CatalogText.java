@@ -0,0 +1,160 @@
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Text helpers shared by the catalog indexes.
+ */
+class CatalogText {
+
+    /** Number of leading call number characters a shelf key holds. */
+    static final int SHELF_KEY_CHARS = 10;
+    /** Bits per character in a shelf key. */
+    static final int SHELF_KEY_BITS = 6;
+
+    private CatalogText() {
+    }
+
+    /**
+     * Packs the first SHELF_KEY_CHARS characters of a call number into a long
+     * that sorts in shelf order, six bits per character with the first
+     * character highest. Characters are compared one by one after
+     * normalizing: the end of the call number comes first, then a separator
+     * (any run of spaces or punctuation), then digits, then letters. The
+     * first run of digits is the class number, so it is compared by its value:
+     * its leading zeros are dropped and it is preceded by a code for its
+     * length, which puts QA9 before QA76. Later runs, such as the decimals in
+     * "QA76.73" and the Cutter number in ".J38", are decimal fractions and
+     * are compared digit by digit. Two call numbers that agree on their first
+     * ten codes stand on the same shelf, so they get the same key.
+     * @param callNumber The call number, e.g. "QA76.73 .J38".
+     * @return The shelf key, a non-negative number below 2^60.
+     */
+    static long shelfKey(String callNumber) {
+        String text = normalize(callNumber);
+        long key = 0;
+        int chars = 0;
+        boolean pendingSeparator = false;
+        boolean classNumber = true;
+        for (int i = 0; i < text.length() && chars < SHELF_KEY_CHARS; i++) {
+            char c = text.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'z')) {
+                pendingSeparator = chars > 0;
+                continue;
+            }
+            if (pendingSeparator) {
+                key = key << SHELF_KEY_BITS | 1;
+                chars++;
+                pendingSeparator = false;
+                if (chars == SHELF_KEY_CHARS) {
+                    break;
+                }
+            }
+            if (c >= 'a') {
+                key = key << SHELF_KEY_BITS | 22 + (c - 'a');
+                chars++;
+                continue;
+            }
+            int end = i;
+            while (end < text.length() && text.charAt(end) >= '0' && text.charAt(end) <= '9') {
+                end++;
+            }
+            if (classNumber) {
+                classNumber = false;
+                while (i < end - 1 && text.charAt(i) == '0') {
+                    i++;
+                }
+                key = key << SHELF_KEY_BITS | 1 + Math.min(end - i, 10);
+                chars++;
+            }
+            for (; i < end && chars < SHELF_KEY_CHARS; i++) {
+                key = key << SHELF_KEY_BITS | 12 + (text.charAt(i) - '0');
+                chars++;
+            }
+            i = end - 1;
+        }
+        return key << (SHELF_KEY_CHARS - chars) * SHELF_KEY_BITS;
+    }
+
+    /**
+     * Turns the leading characters of a shelf key back into text, e.g. for
+     * labelling a section of the shelves. The length code of the class
+     * number is not shown.
+     * @param key The shelf key.
+     * @param chars The number of codes to decode, at most SHELF_KEY_CHARS.
+     * @return The characters, upper-cased, with a space for a separator.
+     */
+    static String shelfKeyPrefix(long key, int chars) {
+        StringBuilder prefix = new StringBuilder(chars);
+        for (int i = 0; i < chars; i++) {
+            int code = (int) (key >>> (SHELF_KEY_CHARS - 1 - i) * SHELF_KEY_BITS) & ((1 << SHELF_KEY_BITS) - 1);
+            if (code == 0) {
+                break;
+            }
+            if (code == 1) {
+                prefix.append(' ');
+            } else if (code >= 22) {
+                prefix.append((char) ('A' + code - 22));
+            } else if (code >= 12) {
+                prefix.append((char) ('0' + code - 12));
+            }
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * Normalizes a title or name for index keys: accents are stripped, letters
+     * are lower-cased, and runs of whitespace are collapsed to a single space.
+     * @param text The text to normalize.
+     * @return The normalized text, or an empty string if text is null.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (isSimpleAscii(text)) {
+            return text.toLowerCase(Locale.ROOT);
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Checks whether text is already in normalized form apart from case:
+     * plain ASCII with single spaces between words and none at the ends.
+     * Most titles are, and they can skip the Unicode decomposition.
+     * @param text The text to check.
+     * @return True if lower-casing is the only normalization needed.
+     */
+    private static boolean isSimpleAscii(String text) {
+        int length = text.length();
+        if (length > 0 && (text.charAt(0) == ' ' || text.charAt(length - 1) == ' ')) {
+            return false;
+        }
+        char previous = 'x';
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x7F || (c < ' ') || (c == ' ' && previous == ' ')) {
+                return false;
+            }
+            previous = c;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,792 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Dictionary that encodes repeated strings, such as author names, as dense int codes.
+ */
+class StringDictionary {
+    private final HashMap<String, Integer> codes;
+    private String[] values;
+    private int size;
+
+    /**
+     * Constructor for StringDictionary.
+     * Initializes the dictionary as empty.
+     */
+    StringDictionary() {
+        codes = new HashMap<>();
+        values = new String[16];
+        size = 0;
+    }
+
+    /**
+     * Returns the code of a string, adding it to the dictionary if it is new.
+     * @param value The string to encode.
+     * @return The code of the string.
+     */
+    int encode(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Returns the code of a string without adding it.
+     * @param value The string to look up.
+     * @return The code of the string, or -1 if it is not in the dictionary.
+     */
+    int find(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * @param code A code returned by encode.
+     * @return The string with that code.
+     */
+    String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * @return The number of distinct strings in the dictionary.
+     */
+    int size() {
+        return size;
+    }
+}
+
+/**
+ * Read-write view of one item of a ColumnarCatalog through the LibraryItem API.
+ * The view holds only the catalog and the item id; every getter reads the columns.
+ */
+class ColumnarItemView extends LibraryItem {
+    private final ColumnarCatalog catalog;
+
+    /**
+     * Constructor for ColumnarItemView.
+     * @param catalog The catalog holding the item.
+     * @param id The id of the item in the catalog.
+     */
+    ColumnarItemView(ColumnarCatalog catalog, int id) {
+        super(null, null, 0);
+        this.catalog = catalog;
+        setId(id);
+    }
+
+    /**
+     * @return The title of the item.
+     */
+    @Override
+    public String getTitle() {
+        return catalog.getTitle(getId());
+    }
+
+    /**
+     * @return The author of the item.
+     */
+    @Override
+    public String getAuthor() {
+        return catalog.getAuthor(getId());
+    }
+
+    /**
+     * @return The number of copies in stock.
+     */
+    @Override
+    public int getStock() {
+        return catalog.getStock(getId());
+    }
+
+    /**
+     * Sets the number of copies in stock.
+     * @param stock The new stock quantity.
+     */
+    @Override
+    public void setStock(int stock) {
+        catalog.setStock(getId(), stock);
+    }
+
+    /**
+     * Takes one copy out of stock if there is one.
+     * @return True if a copy was reserved, false if the item is out of stock.
+     */
+    @Override
+    public boolean tryReserve() {
+        return catalog.tryReserve(getId());
+    }
+
+    /**
+     * Puts one copy back into stock.
+     */
+    @Override
+    public void release() {
+        catalog.release(getId());
+    }
+
+    /**
+     * Takes one copy out of stock and claims an available copy id.
+     * @return The copy id of the claimed copy, or -1 if the item is out of stock.
+     */
+    @Override
+    public int claimCopy() {
+        return catalog.claimCopy(getId());
+    }
+
+    /**
+     * Puts a claimed copy back on the shelf and into stock.
+     * @param copyId The copy id returned by claimCopy.
+     * @return True if the copy was out, false if it is not one of this item's copies or is already in.
+     */
+    @Override
+    public boolean returnCopy(int copyId) {
+        return catalog.returnCopy(getId(), copyId);
+    }
+
+    /**
+     * Displays the item's information in the same format as Book and Magazine.
+     */
+    @Override
+    public void displayInfo() {
+        int id = getId();
+        if (catalog.getType(id) == ColumnarCatalog.TYPE_BOOK) {
+            System.out.println("Type: Book");
+            System.out.println("Title: " + getTitle() + ", Author: " + getAuthor() + ", Stock: " + getStock() + ", Publisher: " + catalog.getDetail(id));
+        } else {
+            System.out.println("Type: Magazine");
+            System.out.println("Title: " + getTitle() + ", Author: " + getAuthor() + ", Stock: " + getStock() + ", Issue: " + catalog.getDetail(id));
+        }
+    }
+}
+
+/**
+ * Catalog backend that stores items column by column instead of as objects.
+ *
+ * Items are identified by dense int ids. Titles are kept as UTF-8 bytes in one
+ * shared array, authors and publishers or issues are dictionary-encoded as int
+ * codes, stock is an atomic int array, and the item type is a single byte. An
+ * open-addressing table of ids finds items by title. Removed items keep their
+ * id with the type set to TYPE_REMOVED.
+ *
+ * Like LibraryItemList, each copy gets a copy id from a contiguous range per
+ * item, and one shared bitset indexed by copy id records which copies are on
+ * the shelf. claimCopy and returnCopy update the stock and the bits with
+ * compare-and-set.
+ *
+ * Items are handed out as ColumnarItemView objects, which are created on demand
+ * and read and write the columns directly. Scans such as findByAuthor and
+ * totalStock walk primitive arrays instead of chasing object references.
+ * The title bytes are limited to 2 GB in total.
+ *
+ * Adding and removing items replace columns and table slots, so they hold the
+ * write lock; every other method holds the read lock, so lookups and copy
+ * claims run concurrently with each other but never see a half-grown column.
+ * This is a benchmark-only backend, see CatalogStore.
+ */
+class ColumnarCatalog implements CatalogStore {
+    static final byte TYPE_REMOVED = 0;
+    static final byte TYPE_BOOK = 1;
+    static final byte TYPE_MAGAZINE = 2;
+
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+
+    private byte[] titleBytes;
+    private int titleBytesUsed;
+    private int[] titleOffsets;
+    private int[] authorCodes;
+    private int[] detailCodes;
+    private AtomicIntegerArray stock;
+    private byte[] types;
+    private int[] firstCopyIds;
+    private int[] copyCounts;
+    private AtomicLongArray copyBits;
+    private int nextCopyId;
+    private int size;
+    private int liveCount;
+
+    private final StringDictionary authors;
+    private final StringDictionary details;
+
+    private int[] titleSlots;
+    private int usedSlots;
+
+    private final ReentrantReadWriteLock lock;
+
+    /**
+     * Constructor for ColumnarCatalog.
+     * @param expectedItems The number of items to size the columns for.
+     */
+    ColumnarCatalog(int expectedItems) {
+        int capacity = Math.max(16, expectedItems);
+        titleBytes = new byte[capacity * 16];
+        titleBytesUsed = 0;
+        titleOffsets = new int[capacity + 1];
+        authorCodes = new int[capacity];
+        detailCodes = new int[capacity];
+        stock = new AtomicIntegerArray(capacity);
+        types = new byte[capacity];
+        firstCopyIds = new int[capacity];
+        copyCounts = new int[capacity];
+        copyBits = new AtomicLongArray(capacity >>> 6);
+        nextCopyId = 0;
+        size = 0;
+        liveCount = 0;
+        authors = new StringDictionary();
+        details = new StringDictionary();
+        titleSlots = new int[tableSizeFor(capacity)];
+        usedSlots = 0;
+        lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * @param items The number of items the title table must hold.
+     * @return A power-of-two table size that keeps the load factor at most one half.
+     */
+    private static int tableSizeFor(int items) {
+        int tableSize = 16;
+        while (tableSize < items * 2) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    /**
+     * Adds a book or magazine to the catalog and gives its copies copy ids.
+     * @param item The Book or Magazine to add. Its fields are copied into the columns.
+     * @return The id of the new item, or -1 if it is not a book or magazine.
+     */
+    @Override
+    public int addItem(LibraryItem item) {
+        byte type;
+        String detail;
+        if (item instanceof Book) {
+            type = TYPE_BOOK;
+            detail = ((Book) item).getPublisher();
+        } else if (item instanceof Magazine) {
+            type = TYPE_MAGAZINE;
+            detail = ((Magazine) item).getIssue();
+        } else {
+            System.out.println("Error: Only books and magazines can be stored in a columnar catalog.");
+            return -1;
+        }
+        lock.writeLock().lock();
+        try {
+            return append(item, type, detail);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends an item to the columns. The caller holds the write lock.
+     * @param item The Book or Magazine to add.
+     * @param type The type tag of the item.
+     * @param detail The publisher of a book or the issue of a magazine.
+     * @return The id of the new item.
+     */
+    private int append(LibraryItem item, byte type, String detail) {
+        if (size == types.length) {
+            grow();
+        }
+        if ((usedSlots + 1) * 2 > titleSlots.length) {
+            rehash();
+        }
+
+        byte[] title = item.getTitle().getBytes(StandardCharsets.UTF_8);
+        if (titleBytesUsed + title.length > titleBytes.length) {
+            long capacity = Math.max(titleBytes.length * 2L, (long) titleBytesUsed + title.length);
+            titleBytes = Arrays.copyOf(titleBytes, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+        }
+        System.arraycopy(title, 0, titleBytes, titleBytesUsed, title.length);
+        titleOffsets[size] = titleBytesUsed;
+        titleBytesUsed += title.length;
+        titleOffsets[size + 1] = titleBytesUsed;
+
+        authorCodes[size] = authors.encode(item.getAuthor());
+        detailCodes[size] = details.encode(detail);
+        int copies = Math.max(0, item.getStock());
+        stock.set(size, copies);
+        types[size] = type;
+        firstCopyIds[size] = nextCopyId;
+        copyCounts[size] = copies;
+        addCopies(copies);
+
+        int id = size++;
+        liveCount++;
+        insertSlot(id, hash(title, 0, title.length));
+        return id;
+    }
+
+    /**
+     * Gives the next copies copy ids and marks them available, growing the bitset
+     * if needed. The caller holds the write lock.
+     * @param copies The number of copies to add.
+     */
+    private void addCopies(int copies) {
+        int end = Math.addExact(nextCopyId, copies);
+        int words = (end + 63) >>> 6;
+        if (words > copyBits.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(words, copyBits.length() * 2));
+            for (int i = 0; i < copyBits.length(); i++) {
+                grown.set(i, copyBits.get(i));
+            }
+            copyBits = grown;
+        }
+        for (int copyId = nextCopyId; copyId < end; copyId++) {
+            int index = copyId >>> 6;
+            copyBits.set(index, copyBits.get(index) | (1L << (copyId & 63)));
+        }
+        nextCopyId = end;
+    }
+
+    /**
+     * Grows every column to twice its capacity.
+     * The caller holds the write lock, so no compare-and-set on the old stock array is lost.
+     */
+    private void grow() {
+        int capacity = types.length * 2;
+        titleOffsets = Arrays.copyOf(titleOffsets, capacity + 1);
+        authorCodes = Arrays.copyOf(authorCodes, capacity);
+        detailCodes = Arrays.copyOf(detailCodes, capacity);
+        AtomicIntegerArray grown = new AtomicIntegerArray(capacity);
+        for (int id = 0; id < size; id++) {
+            grown.set(id, stock.get(id));
+        }
+        stock = grown;
+        types = Arrays.copyOf(types, capacity);
+        firstCopyIds = Arrays.copyOf(firstCopyIds, capacity);
+        copyCounts = Arrays.copyOf(copyCounts, capacity);
+    }
+
+    /**
+     * Hashes a range of UTF-8 title bytes.
+     * @param bytes The array holding the title.
+     * @param from The first byte of the title.
+     * @param to One past the last byte of the title.
+     * @return The hash code of the title.
+     */
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Inserts an id into the title table at the first empty slot of its probe
+     * sequence. Deleted slots are not reused, so items that share a title are
+     * probed in the order they were added.
+     * @param id The item id.
+     * @param h The hash of the item's title.
+     */
+    private void insertSlot(int id, int h) {
+        int mask = titleSlots.length - 1;
+        int slot = h & mask;
+        while (titleSlots[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        titleSlots[slot] = id + 1;
+        usedSlots++;
+    }
+
+    /**
+     * Rebuilds the title table from the live items, dropping deleted slots.
+     * The new table has room for at least one more item.
+     */
+    private void rehash() {
+        titleSlots = new int[tableSizeFor(liveCount + 1)];
+        usedSlots = 0;
+        int mask = titleSlots.length - 1;
+        for (int id = 0; id < size; id++) {
+            if (types[id] == TYPE_REMOVED) {
+                continue;
+            }
+            int slot = hash(titleBytes, titleOffsets[id], titleOffsets[id + 1]) & mask;
+            while (titleSlots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            titleSlots[slot] = id + 1;
+            usedSlots++;
+        }
+    }
+
+    /**
+     * Finds the slot holding the first item with a title.
+     * @param title The title as UTF-8 bytes.
+     * @return The slot index, or -1 if no item has the title.
+     */
+    private int findSlot(byte[] title) {
+        int mask = titleSlots.length - 1;
+        int slot = hash(title, 0, title.length) & mask;
+        while (titleSlots[slot] != EMPTY) {
+            int id = titleSlots[slot] - 1;
+            if (id >= 0 && titleEquals(id, title)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param id The item id.
+     * @param title A title as UTF-8 bytes.
+     * @return True if the item has the title.
+     */
+    private boolean titleEquals(int id, byte[] title) {
+        int from = titleOffsets[id];
+        if (titleOffsets[id + 1] - from != title.length) {
+            return false;
+        }
+        for (int i = 0; i < title.length; i++) {
+            if (titleBytes[from + i] != title[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds an item by its title.
+     * @param title The title of the item to search for.
+     * @return The id of the item, or -1 if it is not in the catalog.
+     */
+    @Override
+    public int findItem(String title) {
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(bytes);
+            return slot < 0 ? -1 : titleSlots[slot] - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a view of an item through the LibraryItem API.
+     * @param id The item id.
+     * @return The view, or null if there is no live item with that id.
+     */
+    @Override
+    public LibraryItem getItem(int id) {
+        lock.readLock().lock();
+        try {
+            if (id < 0 || id >= size || types[id] == TYPE_REMOVED) {
+                return null;
+            }
+            return new ColumnarItemView(this, id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an item by its title.
+     * If the item has multiple copies, one copy is claimed and never returned.
+     * If it's the last copy, the item is removed from the catalog.
+     * @param title The title of the item to be removed.
+     */
+    @Override
+    public void removeItem(String title) {
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(bytes);
+            if (slot < 0) {
+                return;
+            }
+            int id = titleSlots[slot] - 1;
+            if (stock.get(id) > 1 && claimCopy(id) >= 0) {
+                return;
+            }
+            titleSlots[slot] = DELETED;
+            types[id] = TYPE_REMOVED;
+            liveCount--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes one copy of an item out of stock and claims the first available copy id.
+     * The stock is reserved first, so a free bit is known to exist, and the bit
+     * is then cleared with compare-and-set.
+     * @param id The item id.
+     * @return The copy id of the claimed copy, or -1 if the item is out of stock or removed.
+     */
+    @Override
+    public int claimCopy(int id) {
+        lock.readLock().lock();
+        try {
+            if (id < 0 || id >= size || types[id] == TYPE_REMOVED || !tryReserve(id)) {
+                return -1;
+            }
+            int first = firstCopyIds[id];
+            int end = first + copyCounts[id];
+            // Copies returned behind the scan can be missed by one pass, so make two
+            // before deciding the stock and the bitset disagree.
+            for (int pass = 0; pass < 2; pass++) {
+                for (int copyId = first; copyId < end; copyId = (copyId | 63) + 1) {
+                    int index = copyId >>> 6;
+                    long mask = -1L << (copyId & 63);
+                    if (end - (index << 6) < 64) {
+                        mask &= (1L << (end & 63)) - 1;
+                    }
+                    long word = copyBits.get(index);
+                    while ((word & mask) != 0) {
+                        long bit = Long.lowestOneBit(word & mask);
+                        if (copyBits.compareAndSet(index, word, word & ~bit)) {
+                            return (index << 6) + Long.numberOfTrailingZeros(bit);
+                        }
+                        word = copyBits.get(index);
+                    }
+                }
+            }
+            release(id);
+            return -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Puts a claimed copy back on the shelf and into stock.
+     * @param id The item id.
+     * @param copyId The copy id returned by claimCopy.
+     * @return True if the copy was out, false if it is not one of the item's copies or is already in.
+     */
+    @Override
+    public boolean returnCopy(int id, int copyId) {
+        lock.readLock().lock();
+        try {
+            if (id < 0 || id >= size || copyId < firstCopyIds[id] || copyId - firstCopyIds[id] >= copyCounts[id]) {
+                return false;
+            }
+            int index = copyId >>> 6;
+            long bit = 1L << (copyId & 63);
+            while (true) {
+                long word = copyBits.get(index);
+                if ((word & bit) != 0) {
+                    return false;
+                }
+                if (copyBits.compareAndSet(index, word, word | bit)) {
+                    break;
+                }
+            }
+            // The bit is set before the stock goes up, so a reserved copy can always be found.
+            release(id);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes one copy of an item out of stock with compare-and-set, never going below zero.
+     * @param id The item id.
+     * @return True if a copy was reserved, false if the item is out of stock.
+     */
+    boolean tryReserve(int id) {
+        lock.readLock().lock();
+        try {
+            while (true) {
+                int current = stock.get(id);
+                if (current <= 0) {
+                    return false;
+                }
+                if (stock.compareAndSet(id, current, current - 1)) {
+                    return true;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Puts one copy of an item back into stock.
+     * @param id The item id.
+     */
+    void release(int id) {
+        lock.readLock().lock();
+        try {
+            stock.incrementAndGet(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id The item id.
+     * @return The title of the item.
+     */
+    String getTitle(int id) {
+        lock.readLock().lock();
+        try {
+            return new String(titleBytes, titleOffsets[id], titleOffsets[id + 1] - titleOffsets[id], StandardCharsets.UTF_8);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id The item id.
+     * @return The author of the item.
+     */
+    String getAuthor(int id) {
+        lock.readLock().lock();
+        try {
+            return authors.decode(authorCodes[id]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id The item id.
+     * @return The publisher of a book or the issue of a magazine.
+     */
+    String getDetail(int id) {
+        lock.readLock().lock();
+        try {
+            return details.decode(detailCodes[id]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id The item id.
+     * @return The type tag of the item.
+     */
+    byte getType(int id) {
+        lock.readLock().lock();
+        try {
+            return types[id];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id The item id.
+     * @return The number of copies in stock.
+     */
+    @Override
+    public int getStock(int id) {
+        lock.readLock().lock();
+        try {
+            return stock.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the number of copies in stock.
+     * @param id The item id.
+     * @param value The new stock quantity.
+     */
+    void setStock(int id, int value) {
+        lock.readLock().lock();
+        try {
+            stock.set(id, value);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds every item by an author by scanning the author column.
+     * @param author The exact author name.
+     * @return The ids of the matching items, in id order.
+     */
+    int[] findByAuthor(String author) {
+        lock.readLock().lock();
+        try {
+            int code = authors.find(author);
+            if (code < 0) {
+                return new int[0];
+            }
+            int[] ids = new int[16];
+            int count = 0;
+            for (int id = 0; id < size; id++) {
+                if (authorCodes[id] == code && types[id] != TYPE_REMOVED) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = id;
+                }
+            }
+            return Arrays.copyOf(ids, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The total number of copies in stock over all items.
+     */
+    long totalStock() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (int id = 0; id < size; id++) {
+                if (types[id] != TYPE_REMOVED) {
+                    total += stock.get(id);
+                }
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Displays all items in the catalog in id order.
+     */
+    @Override
+    public void displayItems() {
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) {
+                System.out.println("No items in the list.");
+                return;
+            }
+            for (int id = 0; id < size; id++) {
+                if (types[id] != TYPE_REMOVED) {
+                    new ColumnarItemView(this, id).displayInfo();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of items in the catalog.
+     */
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,544 @@
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node of a ConcurrentWaitlist, and the handle of the hold it stands for.
+ * A hold starts out waiting and is either served, cancelled or expired exactly
+ * once; the change of state is a compare-and-set, so a hold that two terminals
+ * try to serve, or to serve and cancel, at the same time goes to only one.
+ * The TimedNode links belong to the HoldExpiryScheduler thread.
+ */
+class WaitlistNode extends TimedNode {
+    static final int WAITING = 0;
+    static final int SERVED = 1;
+    static final int CANCELLED = 2;
+    static final int EXPIRED = 3;
+    static final long NEVER = Long.MAX_VALUE;
+
+    private static final AtomicReferenceFieldUpdater<WaitlistNode, WaitlistNode> NEXT =
+            AtomicReferenceFieldUpdater.newUpdater(WaitlistNode.class, WaitlistNode.class, "next");
+    private static final AtomicIntegerFieldUpdater<WaitlistNode> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(WaitlistNode.class, "state");
+
+    final int borrowerId;
+    final String itemTitle;
+    final String enqueueTime;
+    final HoldPriority priority;
+    final TitleWaitlist waitlist;
+    final long expiresAt;
+    volatile WaitlistNode next;
+    volatile int state;
+
+    /**
+     * Constructor for WaitlistNode.
+     * @param borrowerId The id of the borrower waiting in the queue.
+     * @param itemTitle The title of the item the borrower is waiting for.
+     * @param enqueueTime The timestamp when the borrower joined the queue.
+     * @param priority The priority of the hold.
+     * @param waitlist The waitlist of the title, or null for the dummy node of a lane.
+     * @param expiresAt The time the hold expires, in epoch milliseconds, or NEVER.
+     */
+    WaitlistNode(int borrowerId, String itemTitle, String enqueueTime, HoldPriority priority, TitleWaitlist waitlist,
+            long expiresAt) {
+        this.borrowerId = borrowerId;
+        this.itemTitle = itemTitle;
+        this.enqueueTime = enqueueTime;
+        this.priority = priority;
+        this.waitlist = waitlist;
+        this.expiresAt = expiresAt;
+        next = null;
+        state = WAITING;
+    }
+
+    /**
+     * @param expected The node expected to follow this one.
+     * @param update The node to follow this one instead.
+     * @return True if the link was changed.
+     */
+    boolean casNext(WaitlistNode expected, WaitlistNode update) {
+        return NEXT.compareAndSet(this, expected, update);
+    }
+
+    /**
+     * Ends the hold if it is still waiting.
+     * @param newState SERVED, CANCELLED or EXPIRED.
+     * @return True if this call ended the hold.
+     */
+    boolean finish(int newState) {
+        return STATE.compareAndSet(this, WAITING, newState);
+    }
+}
+
+/**
+ * Lock-free FIFO queue of WaitlistNodes after Michael and Scott.
+ * The head always points at a dummy node, which is the last node taken out,
+ * and the tail may lag one node behind the real end, in which case any
+ * thread that notices helps it forward. Adding and taking never block, and
+ * a thread that is suspended half way through does not stop the others.
+ * Nodes of holds that ended while waiting are unlinked by compact.
+ */
+class WaitlistLane {
+    private static final AtomicReferenceFieldUpdater<WaitlistLane, WaitlistNode> HEAD =
+            AtomicReferenceFieldUpdater.newUpdater(WaitlistLane.class, WaitlistNode.class, "head");
+    private static final AtomicReferenceFieldUpdater<WaitlistLane, WaitlistNode> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(WaitlistLane.class, WaitlistNode.class, "tail");
+
+    private volatile WaitlistNode head;
+    private volatile WaitlistNode tail;
+
+    /**
+     * Constructor for WaitlistLane.
+     * Initializes the lane with only its dummy node.
+     */
+    WaitlistLane() {
+        WaitlistNode dummy = new WaitlistNode(-1, null, null, null, null, WaitlistNode.NEVER);
+        head = dummy;
+        tail = dummy;
+    }
+
+    /**
+     * Adds a node at the end of the lane.
+     * @param node The node to add.
+     */
+    void offer(WaitlistNode node) {
+        while (true) {
+            WaitlistNode last = tail;
+            WaitlistNode next = last.next;
+            if (last != tail) {
+                continue;
+            }
+            if (next != null) {
+                // Another thread linked a node but has not moved the tail yet.
+                TAIL.compareAndSet(this, last, next);
+            } else if (last.casNext(null, node)) {
+                TAIL.compareAndSet(this, last, node);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the node at the front of the lane.
+     * @return The node, or null if the lane is empty.
+     */
+    WaitlistNode poll() {
+        while (true) {
+            WaitlistNode first = head;
+            WaitlistNode last = tail;
+            WaitlistNode next = first.next;
+            if (first != head) {
+                continue;
+            }
+            if (next == null) {
+                return null;
+            }
+            if (first == last) {
+                TAIL.compareAndSet(this, last, next);
+            } else if (HEAD.compareAndSet(this, first, next)) {
+                // The taken node becomes the new dummy; its own fields are left as they are.
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Unlinks the nodes of holds that have ended. A node is unlinked by
+     * pointing its predecessor past it, and its own link is left alone, so a
+     * thread that is standing on it still finds the rest of the lane. The last
+     * node stays even if it has ended, because offer links new nodes after it.
+     * Offer and poll may run alongside, but only one thread may compact a lane
+     * at a time, since two compactions could unlink neighbouring nodes and
+     * put one of them back.
+     * @return The number of nodes unlinked.
+     */
+    int compact() {
+        int removed = 0;
+        WaitlistNode previous = head;
+        WaitlistNode node = previous.next;
+        while (node != null) {
+            WaitlistNode next = node.next;
+            if (next != null && node.state != WaitlistNode.WAITING && previous.casNext(node, next)) {
+                removed++;
+            } else {
+                previous = node;
+            }
+            node = next;
+        }
+        return removed;
+    }
+
+    /**
+     * @return The first node of the lane, which may be cancelled or already served.
+     */
+    WaitlistNode first() {
+        return head.next;
+    }
+}
+
+/**
+ * The holds on one title: one WaitlistLane per hold priority, the number of
+ * holds still waiting, and the waiting hold of each borrower.
+ * A waitlist with no holds left is retired by setting its size to RETIRED,
+ * after which no hold can be added to it and a new waitlist takes its place.
+ */
+class TitleWaitlist {
+    static final int RETIRED = -1;
+
+    final String key;
+    final WaitlistLane[] lanes;
+    final AtomicInteger size;
+    final ConcurrentHashMap<Integer, WaitlistNode> holds;
+    final AtomicBoolean needsPurge;
+
+    /**
+     * Constructor for TitleWaitlist.
+     * Initializes the waitlist with an empty lane for every priority.
+     * @param key The normalized title.
+     */
+    TitleWaitlist(String key) {
+        this.key = key;
+        lanes = new WaitlistLane[HoldPriority.ACCESSIBILITY.getRank() + 1];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new WaitlistLane();
+        }
+        size = new AtomicInteger();
+        holds = new ConcurrentHashMap<>();
+        needsPurge = new AtomicBoolean();
+    }
+
+    /**
+     * Counts a new hold, unless the waitlist has been retired.
+     * @return True if the hold was counted, false if the waitlist is retired.
+     */
+    boolean reserve() {
+        while (true) {
+            int current = size.get();
+            if (current == RETIRED) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Retires the waitlist if no holds are waiting on it.
+     * @return True if the waitlist was retired.
+     */
+    boolean retire() {
+        return size.compareAndSet(0, RETIRED);
+    }
+}
+
+/**
+ * Queue of borrowers waiting for library items that any number of terminals
+ * can use at once without locks.
+ *
+ * Each title has its own TitleWaitlist in a ConcurrentHashMap, so terminals
+ * placing holds on different titles do not touch the same memory. Within a
+ * title, every hold priority has a lock-free WaitlistLane, and the next
+ * borrower is taken from the highest lane that has one, so holds are served
+ * by priority and first come first served within a priority. With a fixed
+ * set of priorities this is the order of a heap keyed by priority and
+ * placement sequence, but placing and serving a hold take O(1) steps rather
+ * than O(log n) and need no lock on the title. The WaitlistNode returned by
+ * enqueue is the handle of the hold, and cancelling through it is a single
+ * compare-and-set without a scan. Cancelling or expiring a hold marks it,
+ * and purge, which the HoldExpiryScheduler calls after every batch of
+ * expiries, unlinks the ended holds from their lanes and drops the
+ * waitlists of titles nobody is waiting for. Holds that have passed their
+ * expiry time are never served, even before the HoldExpiryScheduler has
+ * expired them. The sizes are counters updated when a hold is placed,
+ * served or cancelled, so reading them never waits, though under
+ * concurrent updates they are only an estimate.
+ */
+class ConcurrentWaitlist {
+    private final ConcurrentHashMap<String, TitleWaitlist> waitlists;
+    private final ConcurrentLinkedQueue<TitleWaitlist> needPurge;
+    private final LongAdder size;
+    private final BorrowerRegistry registry;
+
+    /**
+     * Constructor for ConcurrentWaitlist.
+     * Initializes the waitlist as empty.
+     * @param registry The BorrowerRegistry used to show borrower names.
+     */
+    ConcurrentWaitlist(BorrowerRegistry registry) {
+        this.registry = registry;
+        waitlists = new ConcurrentHashMap<>();
+        needPurge = new ConcurrentLinkedQueue<>();
+        size = new LongAdder();
+    }
+
+    /**
+     * Adds a borrower to the queue with a standard hold that does not expire.
+     * @param borrowerId The id of the borrower.
+     * @param itemTitle The title of the item they are waiting for.
+     * @param enqueueTime The timestamp when they joined the queue.
+     * @return The WaitlistNode of the hold.
+     */
+    WaitlistNode enqueue(int borrowerId, String itemTitle, String enqueueTime) {
+        return enqueue(borrowerId, itemTitle, enqueueTime, HoldPriority.STANDARD, WaitlistNode.NEVER);
+    }
+
+    /**
+     * Places a hold for a borrower. A borrower has at most one waiting hold on a title,
+     * so if they are already waiting for it their existing hold is returned.
+     * @param borrowerId The id of the borrower.
+     * @param itemTitle The title of the item they are waiting for.
+     * @param enqueueTime The timestamp when they joined the queue.
+     * @param priority The priority of the hold.
+     * @param expiresAt The time the hold expires, in epoch milliseconds, or WaitlistNode.NEVER.
+     * @return The WaitlistNode of the hold.
+     */
+    WaitlistNode enqueue(int borrowerId, String itemTitle, String enqueueTime, HoldPriority priority, long expiresAt) {
+        String key = CatalogText.normalize(itemTitle);
+        TitleWaitlist waitlist;
+        while (true) {
+            waitlist = waitlists.get(key);
+            if (waitlist == null) {
+                TitleWaitlist created = new TitleWaitlist(key);
+                waitlist = waitlists.putIfAbsent(key, created);
+                if (waitlist == null) {
+                    waitlist = created;
+                }
+            }
+            // Counting the hold first keeps purge from retiring the waitlist while the hold is added.
+            if (waitlist.reserve()) {
+                break;
+            }
+            // Retired by purge, which is about to remove it from the map.
+            Thread.yield();
+        }
+        WaitlistNode node = new WaitlistNode(borrowerId, itemTitle, enqueueTime, priority, waitlist, expiresAt);
+        while (true) {
+            WaitlistNode existing = waitlist.holds.putIfAbsent(borrowerId, node);
+            if (existing == null) {
+                break;
+            }
+            if (existing.state == WaitlistNode.WAITING) {
+                waitlist.size.decrementAndGet();
+                return existing;
+            }
+            // The old hold has ended but is not yet forgotten.
+            if (waitlist.holds.replace(borrowerId, existing, node)) {
+                break;
+            }
+        }
+        size.increment();
+        waitlist.lanes[priority.getRank()].offer(node);
+        return node;
+    }
+
+    /**
+     * Adds a borrower to the queue (same as enqueue).
+     * @param borrowerId The id of the borrower.
+     * @param itemTitle The title of the item they are waiting for.
+     * @param enqueueTime The timestamp when they joined the queue.
+     * @return The WaitlistNode of the hold.
+     */
+    WaitlistNode enqueueBorrower(int borrowerId, String itemTitle, String enqueueTime) {
+        return enqueue(borrowerId, itemTitle, enqueueTime);
+    }
+
+    /**
+     * Removes and returns the next borrower waiting for a specific item.
+     * Safe to call from several terminals at once: each hold is returned to only one of them.
+     * @param itemTitle The title of the item to dequeue a borrower for.
+     * @return The WaitlistNode of the borrower who was waiting, or null if nobody is waiting.
+     */
+    WaitlistNode dequeue(String itemTitle) {
+        TitleWaitlist waitlist = waitlists.get(CatalogText.normalize(itemTitle));
+        if (waitlist == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        for (int rank = waitlist.lanes.length - 1; rank >= 0; rank--) {
+            WaitlistNode node;
+            while ((node = waitlist.lanes[rank].poll()) != null) {
+                if (node.expiresAt <= now) {
+                    expire(node);
+                } else if (node.finish(WaitlistNode.SERVED)) {
+                    forget(node);
+                    return node;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes and returns the next borrower waiting for a specific item whom a
+     * filter accepts. The holds the filter passes over keep their place in the
+     * queue. Served holds stay linked in their lane until the next purge.
+     * @param itemTitle The title of the item to dequeue a borrower for.
+     * @param filter The HoldFilter that decides which holds may be served.
+     * @return The WaitlistNode of the borrower, or null if nobody the filter accepts is waiting.
+     */
+    WaitlistNode dequeue(String itemTitle, HoldFilter filter) {
+        TitleWaitlist waitlist = waitlists.get(CatalogText.normalize(itemTitle));
+        if (waitlist == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        for (int rank = waitlist.lanes.length - 1; rank >= 0; rank--) {
+            for (WaitlistNode node = waitlist.lanes[rank].first(); node != null; node = node.next) {
+                if (node.state != WaitlistNode.WAITING) {
+                    continue;
+                }
+                if (node.expiresAt <= now) {
+                    expire(node);
+                } else if (filter.accepts(node) && node.finish(WaitlistNode.SERVED)) {
+                    forget(node);
+                    return node;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cancels a hold, so the borrower leaves the queue.
+     * @param hold The WaitlistNode returned when the hold was placed.
+     * @return True if the hold was cancelled, false if it had already been served or cancelled.
+     */
+    boolean cancel(WaitlistNode hold) {
+        if (!hold.finish(WaitlistNode.CANCELLED)) {
+            return false;
+        }
+        forget(hold);
+        return true;
+    }
+
+    /**
+     * Expires a hold, so the borrower leaves the queue.
+     * @param hold The WaitlistNode of the hold.
+     * @return True if the hold expired, false if it had already been served, cancelled or expired.
+     */
+    boolean expire(WaitlistNode hold) {
+        if (!hold.finish(WaitlistNode.EXPIRED)) {
+            return false;
+        }
+        forget(hold);
+        return true;
+    }
+
+    /**
+     * Finds the waiting hold of a borrower on a title.
+     * @param borrowerId The id of the borrower.
+     * @param itemTitle The title of the item.
+     * @return The WaitlistNode of the hold, or null if the borrower is not waiting for the title.
+     */
+    WaitlistNode findHold(int borrowerId, String itemTitle) {
+        TitleWaitlist waitlist = waitlists.get(CatalogText.normalize(itemTitle));
+        if (waitlist == null) {
+            return null;
+        }
+        WaitlistNode hold = waitlist.holds.get(borrowerId);
+        return hold != null && hold.state == WaitlistNode.WAITING ? hold : null;
+    }
+
+    /**
+     * Updates the counters and the borrower map after a hold has ended, and
+     * queues the waitlist of the title for the next purge.
+     * @param node The WaitlistNode of the hold.
+     */
+    private void forget(WaitlistNode node) {
+        TitleWaitlist waitlist = node.waitlist;
+        waitlist.holds.remove(node.borrowerId, node);
+        waitlist.size.decrementAndGet();
+        size.decrement();
+        if (waitlist.needsPurge.compareAndSet(false, true)) {
+            needPurge.add(waitlist);
+        }
+    }
+
+    /**
+     * Unlinks the holds that ended since the last purge from their lanes, and
+     * drops the waitlists of titles that nobody is waiting for any more.
+     * Only the waitlists in which a hold ended are visited. Synchronized,
+     * because only one thread may compact a lane at a time; placing, serving
+     * and cancelling holds do not wait for it.
+     * @return The number of ended holds unlinked.
+     */
+    synchronized int purge() {
+        int removed = 0;
+        TitleWaitlist waitlist;
+        while ((waitlist = needPurge.poll()) != null) {
+            // Cleared first, so a hold that ends during the purge queues the waitlist again.
+            waitlist.needsPurge.set(false);
+            for (WaitlistLane lane : waitlist.lanes) {
+                removed += lane.compact();
+            }
+            if (waitlist.retire()) {
+                waitlists.remove(waitlist.key, waitlist);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Checks if there is a borrower in the queue waiting for a specific item.
+     * @param itemTitle The title of the item to check for.
+     * @return True if a borrower is waiting for the item, false otherwise.
+     */
+    boolean hasBorrowerInQueue(String itemTitle) {
+        return size(itemTitle) > 0;
+    }
+
+    /**
+     * Returns the number of borrowers waiting for a specific item.
+     * @param itemTitle The title of the item.
+     * @return The number of borrowers waiting for it.
+     */
+    int size(String itemTitle) {
+        TitleWaitlist waitlist = waitlists.get(CatalogText.normalize(itemTitle));
+        return waitlist == null ? 0 : Math.max(0, waitlist.size.get());
+    }
+
+    /**
+     * Returns the number of borrowers in the queue.
+     * @return The size of the queue.
+     */
+    int size() {
+        return (int) size.sum();
+    }
+
+    /**
+     * @return The number of titles that have a waitlist, including waitlists not purged yet.
+     */
+    int titleCount() {
+        return waitlists.size();
+    }
+
+    /**
+     * Displays the borrowers waiting for each title, in the order they will be served.
+     */
+    void displayQueue() {
+        if (size() == 0) {
+            System.out.println("No borrowers in the queue.");
+            return;
+        }
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
+        System.out.println("Queue elements:");
+        for (TitleWaitlist waitlist : waitlists.values()) {
+            for (int rank = waitlist.lanes.length - 1; rank >= 0; rank--) {
+                for (WaitlistNode node = waitlist.lanes[rank].first(); node != null; node = node.next) {
+                    if (node.state == WaitlistNode.WAITING) {
+                        System.out.println("Name: " + registry.getName(node.borrowerId) + ", Item Title: " + node.itemTitle
+                                + ", Priority: " + node.priority.getName() + ", Enqueue Time: " + node.enqueueTime
+                                + (node.expiresAt == WaitlistNode.NEVER ? "" : ", Expires: " + formatter.format(new Date(node.expiresAt))));
+                    }
+                }
+            }
+        }
+    }
+}
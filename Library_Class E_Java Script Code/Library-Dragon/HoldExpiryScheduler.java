@@ -0,0 +1,139 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background thread that expires the holds of a ConcurrentWaitlist once
+ * their expiry time has passed.
+ *
+ * Terminals hand new holds to the scheduler through a lock-free inbox, and
+ * only the scheduler thread touches its TimingWheel, which has one-second
+ * ticks. Once a second the thread moves the inbox onto the wheel, advances
+ * the wheel and expires every hold that fell due, so expiring a batch of
+ * holds costs O(expired) whatever the number of holds still waiting. Holds
+ * that were served or cancelled in the meantime stay on the wheel until
+ * their expiry time and are then dropped, as expiring them does nothing.
+ * After each batch the thread purges the waitlist, so ended holds do not
+ * stay linked in their lanes and empty title waitlists are dropped.
+ */
+class HoldExpiryScheduler implements Runnable {
+    private static final long TICK_MILLIS = 1000;
+
+    private final ConcurrentWaitlist waitlist;
+    private final ConcurrentLinkedQueue<WaitlistNode> inbox;
+    private final TimingWheel<WaitlistNode> wheel;
+    private final AtomicLong expired;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Constructor for HoldExpiryScheduler.
+     * @param waitlist The waitlist whose holds are expired.
+     */
+    HoldExpiryScheduler(ConcurrentWaitlist waitlist) {
+        this.waitlist = waitlist;
+        inbox = new ConcurrentLinkedQueue<>();
+        wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+        expired = new AtomicLong();
+        running = false;
+        thread = null;
+    }
+
+    /**
+     * Starts the scheduler thread. It is a daemon thread, so it does not keep the program running.
+     */
+    synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "hold-expiry");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the scheduler thread and waits for it to finish.
+     */
+    synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Hands a hold to the scheduler. Safe to call from any thread.
+     * Holds that never expire, and holds already handed over, are ignored.
+     * @param hold The WaitlistNode of the hold.
+     */
+    void schedule(WaitlistNode hold) {
+        if (hold.expiresAt != WaitlistNode.NEVER) {
+            inbox.add(hold);
+        }
+    }
+
+    /**
+     * Expires the holds that are due, once a second, until the scheduler is stopped.
+     */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(TICK_MILLIS);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+            expireDue(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Moves the new holds onto the wheel, expires every hold that is due, and
+     * purges the ended holds from the waitlist.
+     * Called by the scheduler thread; synchronized so that it can also be
+     * called directly when the thread is not running.
+     * @param nowMillis The current time, in epoch milliseconds.
+     * @return The number of holds that expired.
+     */
+    synchronized int expireDue(long nowMillis) {
+        WaitlistNode hold;
+        while ((hold = inbox.poll()) != null) {
+            if (!hold.isScheduled() && hold.state == WaitlistNode.WAITING) {
+                wheel.schedule(hold, hold.expiresAt);
+            }
+        }
+        wheel.advance(nowMillis);
+        int count = 0;
+        while ((hold = wheel.pollExpired()) != null) {
+            if (waitlist.expire(hold)) {
+                count++;
+            }
+        }
+        expired.addAndGet(count);
+        waitlist.purge();
+        return count;
+    }
+
+    /**
+     * @return The number of holds expired by the scheduler so far.
+     */
+    long expiredCount() {
+        return expired.get();
+    }
+
+    /**
+     * @return The number of holds waiting on the wheel for their expiry time.
+     */
+    synchronized int pendingCount() {
+        return wheel.waitingCount();
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * Interface for deciding which holds may be served.
+ */
+interface HoldFilter {
+    /**
+     * Decides whether a waiting hold may be served now.
+     * @param hold The WaitlistNode of the hold.
+     * @return True if the hold may be served, false to pass over it.
+     */
+    boolean accepts(WaitlistNode hold);
+}
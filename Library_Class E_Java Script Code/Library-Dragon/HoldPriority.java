@@ -0,0 +1,40 @@
+/**
+ * Priority of a hold in the borrower queue.
+ * Holds of a higher rank are served first, and holds of the same rank in
+ * the order they were placed. Accessibility holds come before faculty
+ * holds, which come before standard ones. A ConcurrentWaitlist keeps one
+ * lane per rank, so the ranks run from 0 to the rank of ACCESSIBILITY
+ * without gaps.
+ */
+class HoldPriority {
+    static final HoldPriority STANDARD = new HoldPriority("Standard", 0);
+    static final HoldPriority FACULTY = new HoldPriority("Faculty", 1);
+    static final HoldPriority ACCESSIBILITY = new HoldPriority("Accessibility", 2);
+
+    private final String name;
+    private final int rank;
+
+    /**
+     * Constructor for HoldPriority.
+     * @param name The name of the kind of hold.
+     * @param rank The rank of the hold; higher ranks are served first.
+     */
+    private HoldPriority(String name, int rank) {
+        this.name = name;
+        this.rank = rank;
+    }
+
+    /**
+     * @return The name of the kind of hold.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return The rank of the hold; higher ranks are served first.
+     */
+    int getRank() {
+        return rank;
+    }
+}
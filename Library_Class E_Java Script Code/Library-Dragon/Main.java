@@ -1,6 +1,9 @@
 // Main.java
+import java.io.IOException;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -9,13 +12,24 @@ import java.util.Scanner;
  */
 public class Main {
     private static LibraryItemList itemList = new LibraryItemList();
+    private static BorrowerRegistry borrowerRegistry = new BorrowerRegistry();
     private static BorrowedItemList
-    borrowedItemList = new BorrowedItemList();
-    private static BorrowerList borrowerList = new BorrowerList(); 
-    private static TransactionList transactionList = new TransactionList();
-    private static ItemStack returnedItemStack = new ItemStack(10);
-    private static BorrowerQueue borrowerQueue = new BorrowerQueue();
+    borrowedItemList = new BorrowedItemList(borrowerRegistry);
+    private static BorrowerList borrowerList = new BorrowerList(borrowerRegistry); 
+    private static TransactionList transactionList = new TransactionList(borrowerList);
+    private static ReturnsInbox returnsInbox = ReturnsInbox.fromSystemProperties(itemList);
+    private static ReshelvingPlanner reshelvingPlanner = new ReshelvingPlanner(returnsInbox, 100_000, 50);
+    private static ConcurrentWaitlist borrowerQueue = new ConcurrentWaitlist(borrowerRegistry);
+    private static HoldExpiryScheduler holdExpiry = new HoldExpiryScheduler(borrowerQueue);
+    private static final Object libraryLock = new Object();
+    private static ReturnDispatcher returnDispatcher = new ReturnDispatcher(itemList, borrowedItemList, borrowerList,
+            transactionList, borrowerQueue, borrowerRegistry, returnsInbox, libraryLock, true);
     private static Scanner scanner = new Scanner(System.in);
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final int MAX_TITLE_SUGGESTIONS = 10;
+    private static final int PAGE_SIZE = 50;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int HOLD_DAYS = 30;
 
     /**
      * Gets the current time in the format "yyyy-MM-dd HH:mm:ss".
@@ -27,6 +41,76 @@ public class Main {
         return formatter.format(currentDate);
     }
  
+    /**
+     * Works out when a loan is due back from the date it was borrowed and the borrower's policy.
+     * A borrow date that is not a yyyy-mm-dd date counts as today.
+     * @param borrowDate The borrow date as entered.
+     * @param borrower The borrower.
+     * @return The due date, in epoch milliseconds.
+     */
+    private static long getDueDate(String borrowDate, Borrower borrower) {
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
+        formatter.setLenient(false);
+        long start;
+        try {
+            start = formatter.parse(borrowDate.trim()).getTime();
+        } catch (ParseException e) {
+            start = System.currentTimeMillis();
+        }
+        return start + borrower.getPolicy().getLoanDays() * DAY_MILLIS;
+    }
+
+    /**
+     * Reads an item title from the user. 
+     * If the text typed is not an exact title, the titles starting with it are listed 
+     * together with their stock, and one of them can be picked by number.
+     * @param prompt The prompt to print.
+     * @return The title that was typed or picked.
+     */
+    private static String readTitle(String prompt) {
+        System.out.print(prompt);
+        return resolveTitle(scanner.nextLine());
+    }
+
+    /**
+     * Completes a title the user has typed.
+     * If the text is not an exact title, the titles starting with it are listed
+     * together with their stock, and one of them can be picked by number.
+     * @param title The text typed.
+     * @return The title that was typed or picked.
+     */
+    private static String resolveTitle(String title) {
+        if (title.isEmpty()) {
+            return title;
+        }
+        List<LibraryItemNode> suggestions;
+        synchronized (libraryLock) {
+            if (itemList.findItem(title) != null) {
+                return title;
+            }
+            suggestions = itemList.completeTitle(title, MAX_TITLE_SUGGESTIONS);
+            if (suggestions.isEmpty()) {
+                return title;
+            }
+            System.out.println("Titles starting with \"" + title + "\":");
+            for (int i = 0; i < suggestions.size(); i++) {
+                LibraryItem item = suggestions.get(i).libraryItem;
+                System.out.println((i + 1) + ". " + item.getTitle() + " (Stock: " + item.getStock() + ")");
+            }
+        }
+        System.out.print("Choose a number, or press Enter to keep \"" + title + "\": ");
+        String choice = scanner.nextLine().trim();
+        try {
+            int number = Integer.parseInt(choice);
+            if (number >= 1 && number <= suggestions.size()) {
+                return suggestions.get(number - 1).libraryItem.getTitle();
+            }
+        } catch (NumberFormatException e) {
+            // Keep the title as typed.
+        }
+        return title;
+    }
+ 
     /**
      * Adds a new book or magazine to the library's item list.
      * Takes user input for the item details.
@@ -76,29 +160,155 @@ public class Main {
             System.out.print("Enter publisher: ");
             String publisher = scanner.nextLine();
             Book book = new Book(title, author, stock, publisher);
-            itemList.addItem(book);
+            book.setCallNumber(readCallNumber());
+            synchronized (libraryLock) {
+                itemList.addItem(book);
+            }
             System.out.println("Book added successfully.");
         } else if (choice == 2) {
             System.out.print("Enter issue: ");
             String issue = scanner.nextLine();
             Magazine magazine = new Magazine(title, author, stock, issue);
-            itemList.addItem(magazine);
+            magazine.setCallNumber(readCallNumber());
+            synchronized (libraryLock) {
+                itemList.addItem(magazine);
+            }
             System.out.println("Magazine added successfully.");
         }
     }
     
 
+    /**
+     * Asks for the call number of a new item.
+     * @return The call number, or an empty string to shelve the item by author.
+     */
+    private static String readCallNumber() {
+        System.out.print("Enter call number (leave blank to shelve by author): ");
+        return scanner.nextLine();
+    }
+
+    /**
+     * Plans the reshelving of the next batch of returned items and shows
+     * the pick lists, one per cart, in the order the shelves are walked.
+     */
+    private static void reshelveItems() {
+        List<PickList> pickLists = reshelvingPlanner.planBatch();
+        if (pickLists.isEmpty()) {
+            System.out.println("No returned items to reshelve.");
+            return;
+        }
+        int planned = 0;
+        for (int i = 0; i < pickLists.size(); i++) {
+            pickLists.get(i).display(i + 1);
+            planned += pickLists.get(i).size();
+        }
+        System.out.printf("Planned %d items on %d %s in %.3f ms.%n", planned, pickLists.size(),
+                pickLists.size() == 1 ? "cart" : "carts", reshelvingPlanner.getLastPlanNanos() / 1e6);
+        if (!returnsInbox.isEmpty()) {
+            System.out.println(returnsInbox.size() + " returned items are still waiting to be reshelved.");
+        }
+    }
+
+    /**
+     * Sets the account type of a borrower, creating the account if the borrower
+     * has not borrowed anything yet. Loans already out keep their due dates.
+     */
+    private static void setAccountType() {
+        System.out.print("Enter borrower name: ");
+        String borrowerName = scanner.nextLine();
+        System.out.print("Enter account type (Standard or Institutional): ");
+        String type = scanner.nextLine();
+        BorrowerPolicy policy = BorrowerPolicy.forName(type.trim());
+        if (policy == null) {
+            System.out.println("Error: Unknown account type " + type + ".");
+            return;
+        }
+
+        synchronized (libraryLock) {
+            int borrowerId = borrowerRegistry.register(borrowerName);
+            Borrower borrower = borrowerList.findBorrower(borrowerId);
+            if (borrower == null) {
+                borrowerList.addBorrower(new Borrower(borrowerId, borrowerName, policy));
+            } else {
+                borrower.setPolicy(policy);
+            }
+            System.out.println("The account of " + borrowerName + " is now " + policy.getName() + ", with "
+                    + borrowerList.getLoanCount(borrowerId) + " of " + policy.getMaxLoans() + " items out.");
+        }
+    }
+
+    /**
+     * Imports books and magazines from a CSV or TSV file into the library's item list.
+     * Takes user input for the file path and reports the import rate.
+     */
+    private static void importItems() {
+        System.out.print("Enter the path of the CSV or TSV file: ");
+        String path = scanner.nextLine();
+        CatalogImporter importer = new CatalogImporter(itemList);
+        try {
+            synchronized (libraryLock) {
+                importer.importFile(path);
+            }
+        } catch (IOException e) {
+            System.out.println("Error: Could not import " + path + ": " + e.getMessage());
+            return;
+        }
+        System.out.printf("Imported %d items in %.2f s (%.0f items/sec).%n",
+                importer.getImportedCount(), importer.getElapsedSeconds(), importer.getItemsPerSecond());
+        if (importer.getSkippedCount() > 0) {
+            System.out.println("Skipped " + importer.getSkippedCount() + " malformed lines.");
+        }
+    }
+    
+    /**
+     * Lists the library's items in alphabetical order of title, one page at a time. 
+     * Takes user input for an optional range of titles.
+     */
+    private static void viewItems() {
+        System.out.print("Enter the first title to list (or press Enter to start at the beginning): ");
+        String from = scanner.nextLine();
+        System.out.print("Enter the last title to list (or press Enter to go to the end): ");
+        String to = scanner.nextLine();
+
+        TitlePage page;
+        synchronized (libraryLock) {
+            page = itemList.listItems(from, to, null, PAGE_SIZE);
+        }
+        if (page.items.isEmpty()) {
+            System.out.println("No items in the list.");
+            return;
+        }
+        int pageNumber = 1;
+        while (true) {
+            System.out.println("Page " + pageNumber + ":");
+            synchronized (libraryLock) {
+                for (LibraryItemNode node : page.items) {
+                    node.libraryItem.displayInfo();
+                }
+            }
+            if (page.nextCursor == null) {
+                return;
+            }
+            System.out.print("Press Enter for the next page, or type q to stop: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                return;
+            }
+            synchronized (libraryLock) {
+                page = itemList.listItems(from, to, page.nextCursor, PAGE_SIZE);
+            }
+            pageNumber++;
+        }
+    }
     
     /**
      * Removes an item from the library's item list. 
      * Takes user input for the item title to be removed.
      */
     private static void removeItem() {
-        System.out.println("Available items:");
-        itemList.displayItems();
-        System.out.print("Enter the title of the item to be removed: ");
-        String title = scanner.nextLine();
-        itemList.removeItem(title);
+        String title = readTitle("Enter the title (or the beginning of it) of the item to be removed: ");
+        synchronized (libraryLock) {
+            itemList.removeItem(title);
+        }
         System.out.println("Item removed successfully.");
     }
 
@@ -108,104 +318,312 @@ public class Main {
      * Checks for availability and manages the waiting queue if needed.
      */
     private static void borrowItem() {
-        System.out.println("Available books:");
-        itemList.displayItems();
-        System.out.print("Enter the title of the item to borrow: ");
-        String title = scanner.nextLine();
+        String title = readTitle("Enter the title (or the beginning of it) of the item to borrow: ");
         System.out.print("Enter borrower name: ");
         String borrowerName = scanner.nextLine();
         System.out.print("Enter borrow date (yyyy-mm-dd): ");
         String borrowDate = scanner.nextLine();
 
-        LibraryItemNode itemNode = itemList.findItem(title);
-        if (itemNode != null && itemNode.libraryItem.getStock() > 0) {
-            Borrower borrower = borrowerList.findBorrower(borrowerName);
-            if (borrower == null) {
-                borrower = new Borrower(borrowerName);
-                borrowerList.addBorrower(borrower, null); 
-            }
-            BorrowedItemNode borrowedItemNode = borrowedItemList.borrowItem(itemNode.libraryItem, borrowerName, borrowDate);
-            borrower.addBorrowedItem(itemNode.libraryItem);
-            borrowerList.addBorrower(borrower, borrowedItemNode);
-            transactionList.addTransaction(itemNode.libraryItem, borrower, borrowDate, "");
-            itemList.decrementStock(title);
-            System.out.println("Item borrowed successfully.");
-        } else if (borrowerQueue.hasBorrowerInQueue(title)) {
-            System.out.println("There are borrowers in the queue for this item. Please try again later.");
-        } else {
-            borrowerQueue.enqueueBorrower(borrowerName, title, getCurrentTime());
-            System.out.println("No available stock. Borrower enqueued for the requested item.");
+        synchronized (libraryLock) {
+            int borrowerId = borrowerRegistry.register(borrowerName);
+            Borrower borrower = borrowerList.findBorrower(borrowerId);
+            if (!borrowerList.canBorrow(borrowerId)) {
+                System.out.println("Error: " + borrowerName + " already has the maximum of "
+                        + borrower.getPolicy().getMaxLoans() + " items borrowed.");
+                return;
+            }
+
+            // Claiming the copy first makes the stock check and the decrement one atomic step.
+            LibraryItemNode itemNode = itemList.findItem(title);
+            int copyId = itemNode == null ? -1 : itemList.claimCopy(itemNode.libraryItem);
+            if (copyId >= 0) {
+                if (borrower == null) {
+                    borrower = new Borrower(borrowerId, borrowerName);
+                    borrowerList.addBorrower(borrower); 
+                }
+                long dueDate = getDueDate(borrowDate, borrower);
+                BorrowedItemNode borrowedItemNode = borrowedItemList.borrowItem(itemNode.libraryItem, copyId, borrowerId, borrowDate, dueDate);
+                borrowerList.addLoan(borrowedItemNode);
+                transactionList.addTransaction(itemNode.libraryItem, borrower, borrowDate, "");
+                System.out.println("Item borrowed successfully. Copy number: " + copyId
+                        + ", Due Date: " + new SimpleDateFormat("yyyy-MM-dd").format(new Date(dueDate)));
+            } else if (borrowerQueue.hasBorrowerInQueue(title)) {
+                System.out.println("There are borrowers in the queue for this item. Please try again later.");
+            } else {
+                placeHold(borrowerId, title, HoldPriority.STANDARD);
+                System.out.println("No available stock. Borrower enqueued for the requested item.");
+            }
         }
     }
 
     /**
      * Adds a borrower to the queue for a specific library item. 
-     * Takes user input for the borrower name and item title.
+     * Takes user input for the borrower name, item title and hold type.
      */
     private static void enqueueBorrower() {
-        System.out.println("Available items:");
-        itemList.displayItems();
         System.out.print("Enter borrower name: ");
         String borrowerName = scanner.nextLine();
-        System.out.print("Enter item title: ");
-        String itemTitle = scanner.nextLine();
+        String itemTitle = readTitle("Enter item title (or the beginning of it): ");
     
-        LibraryItemNode item = itemList.findItem(itemTitle);
-        if (item != null && item.libraryItem.getStock() > 0) {
-            borrowerQueue.enqueue(borrowerName, itemTitle, getCurrentTime());
+        boolean found;
+        synchronized (libraryLock) {
+            LibraryItemNode item = itemList.findItem(itemTitle);
+            found = item != null && item.libraryItem.getStock() > 0;
+        }
+        if (found) {
+            HoldPriority priority = readHoldPriority();
+            int borrowerId;
+            synchronized (libraryLock) {
+                borrowerId = borrowerRegistry.register(borrowerName);
+            }
+            if (borrowerQueue.findHold(borrowerId, itemTitle) != null) {
+                System.out.println(borrowerName + " is already waiting for this item.");
+                return;
+            }
+            placeHold(borrowerId, itemTitle, priority);
             System.out.println("Borrower enqueued successfully.");
         } else {
             System.out.println("Item not available or not found.");
         }
     }
 
+    /**
+     * Places a hold that expires after HOLD_DAYS days and hands it to the expiry scheduler.
+     * @param borrowerId The id of the borrower.
+     * @param itemTitle The title of the item they are waiting for.
+     * @param priority The priority of the hold.
+     */
+    private static void placeHold(int borrowerId, String itemTitle, HoldPriority priority) {
+        long expiresAt = System.currentTimeMillis() + HOLD_DAYS * DAY_MILLIS;
+        WaitlistNode hold = borrowerQueue.enqueue(borrowerId, itemTitle, getCurrentTime(), priority, expiresAt);
+        holdExpiry.schedule(hold);
+    }
+
+    /**
+     * Reads the type of a hold from the user. Anything other than 2 or 3 is a standard hold.
+     * @return The priority of the hold.
+     */
+    private static HoldPriority readHoldPriority() {
+        System.out.print("Enter hold type (1. Standard, 2. Faculty, 3. Accessibility): ");
+        String type = scanner.nextLine().trim();
+        if (type.equals("2")) {
+            return HoldPriority.FACULTY;
+        } else if (type.equals("3")) {
+            return HoldPriority.ACCESSIBILITY;
+        }
+        return HoldPriority.STANDARD;
+    }
+
+    /**
+     * Cancels the hold of a borrower on a library item, so they leave the queue.
+     * Takes user input for the borrower name and item title.
+     */
+    private static void cancelHold() {
+        System.out.print("Enter borrower name: ");
+        String borrowerName = scanner.nextLine();
+        System.out.print("Enter item title: ");
+        String itemTitle = scanner.nextLine();
+
+        // The registry is not thread-safe, so look the name up under the library lock.
+        // The waitlist itself is lock-free, so finding and cancelling the hold need no lock.
+        int borrowerId;
+        synchronized (libraryLock) {
+            borrowerId = borrowerRegistry.findId(borrowerName);
+        }
+        WaitlistNode hold = borrowerId < 0 ? null : borrowerQueue.findHold(borrowerId, itemTitle);
+        if (hold != null && borrowerQueue.cancel(hold)) {
+            System.out.println("Hold cancelled successfully.");
+        } else {
+            System.out.println("Error: " + borrowerName + " is not waiting for " + itemTitle + ".");
+        }
+    }
+
+
+
+    /**
+     * Searches the catalog by author. 
+     * Takes user input for an author name or the beginning of one and lists the matching items.
+     */
+    private static void searchByAuthor() {
+        System.out.print("Enter author name (or the beginning of it): ");
+        String author = scanner.nextLine();
+        synchronized (libraryLock) {
+            List<LibraryItemNode> results = itemList.findItemsByAuthorPrefix(author, MAX_SEARCH_RESULTS);
+            if (results.isEmpty()) {
+                System.out.println("No items found for that author.");
+                return;
+            }
+            for (LibraryItemNode node : results) {
+                node.libraryItem.displayInfo();
+            }
+            if (results.size() == MAX_SEARCH_RESULTS) {
+                System.out.println("Showing the first " + MAX_SEARCH_RESULTS + " items. Type more of the name to narrow the search.");
+            }
+        }
+    }
+
+    /**
+     * Searches the titles, authors, publishers and issues in the catalog for keywords. 
+     * Takes user input for the keywords and lists the best matching items.
+     */
+    private static void searchByKeyword() {
+        System.out.print("Enter keywords (put OR between them to match any): ");
+        String query = scanner.nextLine();
+        synchronized (libraryLock) {
+            List<LibraryItemNode> results = itemList.searchItems(query, MAX_SEARCH_RESULTS);
+            if (results.isEmpty()) {
+                System.out.println("No items match those keywords.");
+                return;
+            }
+            for (LibraryItemNode node : results) {
+                node.libraryItem.displayInfo();
+            }
+        }
+    }
+
+    /**
+     * Lists the issues of a magazine. 
+     * Takes user input for the magazine title and an optional range of issues, 
+     * shows the latest issue, and lists the issues in the range oldest first.
+     */
+    private static void browseIssues() {
+        String title = readTitle("Enter the magazine title (or the beginning of it): ");
+        synchronized (libraryLock) {
+            List<LibraryItemNode> latest = itemList.findLatestIssue(title);
+            if (latest.isEmpty()) {
+                System.out.println("No magazine found with that title.");
+                return;
+            }
+            System.out.println("Latest issue:");
+            for (LibraryItemNode node : latest) {
+                node.libraryItem.displayInfo();
+            }
+        }
+
+        System.out.print("Enter the first issue to list (or press Enter to start at the first issue): ");
+        String from = scanner.nextLine();
+        System.out.print("Enter the last issue to list (or press Enter to go to the latest issue): ");
+        String to = scanner.nextLine();
+        System.out.print("Show only issues in stock? (y/n): ");
+        boolean availableOnly = scanner.nextLine().trim().equalsIgnoreCase("y");
+
+        synchronized (libraryLock) {
+            List<LibraryItemNode> issues = itemList.findIssues(title, from, to, availableOnly, MAX_SEARCH_RESULTS);
+            if (issues.isEmpty()) {
+                System.out.println("No issues found in that range.");
+                return;
+            }
+            for (LibraryItemNode node : issues) {
+                node.libraryItem.displayInfo();
+            }
+            if (issues.size() == MAX_SEARCH_RESULTS) {
+                System.out.println("Showing the first " + MAX_SEARCH_RESULTS + " issues. Narrow the range to see the rest.");
+            }
+        }
+    }
+
+    /**
+     * Finds the loan of a title to return. If more than one copy of the title
+     * is out, the outstanding loans are shown and the borrower is asked for,
+     * so that the loan of that borrower is returned rather than just the first one.
+     * @param title The title of the item to return.
+     * @return The BorrowedItemNode of the loan, or null if there is no such loan.
+     */
+    private static BorrowedItemNode findLoanOfTitle(String title) {
+        List<BorrowedItemNode> loans;
+        synchronized (libraryLock) {
+            loans = borrowedItemList.findLoans(title);
+            if (loans.size() > 1) {
+                System.out.println(loans.size() + " copies of " + title + " are borrowed:");
+                for (BorrowedItemNode loan : loans) {
+                    System.out.println("Copy: " + loan.copyId + ", Borrowed By: " + borrowerRegistry.getName(loan.borrowerId)
+                            + ", Borrow Date: " + loan.borrowDate);
+                }
+            }
+        }
+        if (loans.isEmpty()) {
+            System.out.println("Error: No copy of " + title + " is borrowed.");
+            return null;
+        }
+        if (loans.size() == 1) {
+            return loans.get(0);
+        }
+        System.out.print("Enter borrower name: ");
+        String borrowerName = scanner.nextLine();
+        BorrowedItemNode loan;
+        synchronized (libraryLock) {
+            int borrowerId = borrowerRegistry.findId(borrowerName);
+            loan = borrowerId < 0 ? null : borrowedItemList.findLoan(borrowerId, title);
+        }
+        if (loan == null) {
+            System.out.println("Error: " + borrowerName + " has not borrowed " + title + ".");
+        }
+        return loan;
+    }
 
+    /**
+     * Finds the loan of a copy by its copy number.
+     * @param copyNumber The copy number as typed, without the leading #.
+     * @return The BorrowedItemNode of the loan, or null if the copy is not out.
+     */
+    private static BorrowedItemNode findCopyNumber(String copyNumber) {
+        BorrowedItemNode loan;
+        try {
+            int copyId = Integer.parseInt(copyNumber);
+            synchronized (libraryLock) {
+                loan = borrowedItemList.findByCopy(copyId);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Error: " + copyNumber + " is not a copy number.");
+            return null;
+        }
+        if (loan == null) {
+            System.out.println("Error: Copy " + copyNumber + " is not borrowed.");
+        }
+        return loan;
+    }
 
     /**
      * Handles the process of returning a borrowed library item. 
-     * Takes user input for the item title and return date. 
+     * Takes user input for the copy number or item title and the return date. 
+     * A partly typed title is completed the same way as when borrowing.
      * Updates the item stock, borrower's list, transaction history, and 
-     * checks the queue to process waiting borrowers.
+     * hands the copy to the ReturnDispatcher, which lends it to the next 
+     * borrower in the queue or puts it back into stock.
      */
     private static void returnItem() {
-        System.out.println("Borrowed items:");
-        borrowedItemList.displayBorrowedItems();
-        System.out.print("Enter the title of the item to return: ");
-        String title = scanner.nextLine();
+        System.out.print("Enter the title (or the beginning of it) of the item to return, or # and the copy number (e.g. #42): ");
+        String input = scanner.nextLine().trim();
 
-        BorrowedItemNode returnedItem = borrowedItemList.returnItem(title);
-        if (returnedItem != null) {
-            returnedItemStack.push(returnedItem.item);
-            System.out.print("Enter return date (yyyy-mm-dd): ");
-            String returnDate = scanner.nextLine();
+        BorrowedItemNode returnedItem;
+        if (input.startsWith("#")) {
+            // Only input marked with # is a copy number, so numeric titles such as 1984 are looked up by title.
+            returnedItem = findCopyNumber(input.substring(1).trim());
+        } else {
+            returnedItem = findLoanOfTitle(resolveTitle(input));
+        }
+        if (returnedItem == null) {
+            return;
+        }
+        System.out.print("Enter return date (yyyy-mm-dd): ");
+        String returnDate = scanner.nextLine();
 
-            Borrower borrower = borrowerList.findBorrower(returnedItem.borrowerName);
-            borrower.removeBorrowedItem(returnedItem.item);
-            borrowerList.removeBorrower(borrower.getName());
-            transactionList.addTransaction(returnedItem.item, borrower, returnedItem.borrowDate, returnDate);
-            itemList.incrementStock(title);
+        synchronized (libraryLock) {
+            // The loan was looked up before the date was typed; check it is still out.
+            if (borrowedItemList.findByCopy(returnedItem.copyId) != returnedItem) {
+                System.out.println("Error: Copy " + returnedItem.copyId + " has already been returned.");
+                return;
+            }
             borrowedItemList.removeByNode(returnedItem);
-            System.out.println("Item returned successfully.");
-
-            // Check if there are borrowers in the queue for the returned item
-     if (borrowerQueue.hasBorrowerInQueue(title)) {
-        BorrowerQueueNode nextBorrower = borrowerQueue.dequeue(title);
-        System.out.println("Borrowing item to the next borrower: " + nextBorrower.name);
-
-        // Automatically borrow the item to the next borrower
-        LibraryItem borrowedItem = returnedItemStack.pop();
-        BorrowedItemNode newBorrowedItemNode = borrowedItemList.borrowItem(borrowedItem, nextBorrower.name, getCurrentTime());
-        Borrower newBorrower = borrowerList.findBorrower(nextBorrower.name);
-        if (newBorrower == null) {
-            newBorrower = new Borrower(nextBorrower.name);
-            borrowerList.addBorrower(newBorrower, newBorrowedItemNode);
-        } else {
-            newBorrower.addBorrowedItem(borrowedItem);
-            borrowerList.addBorrower(newBorrower, newBorrowedItemNode);
+            Borrower borrower = borrowerList.findBorrower(returnedItem.borrowerId);
+            borrowerList.removeLoan(returnedItem);
+            transactionList.addTransaction(returnedItem.item, borrower, returnedItem.borrowDate, returnDate);
         }
-        transactionList.addTransaction(borrowedItem, newBorrower, getCurrentTime(), "");
-        itemList.decrementStock(title); 
-    }}}
+        System.out.println("Item returned successfully.");
+
+        // The dispatcher lends the copy to the next borrower in the queue, or puts it back on the shelf.
+        returnDispatcher.copyAvailable(returnedItem.item, returnedItem.copyId);
+    }
     
     
     /**
@@ -214,6 +632,8 @@ public class Main {
      * @param args Command line arguments (not used).
      */
     public static void main(String[] args) {
+        holdExpiry.start();
+        returnDispatcher.start();
         boolean running = true;
         while (running) {
             System.out.println("\nWelcome to the Library System");
@@ -241,6 +661,9 @@ public class Main {
                     break;
                 case 3:
                     running = false;
+                    holdExpiry.stop();
+                    returnDispatcher.stop();
+                    returnsInbox.close();
                     System.out.println("Exiting.");
                     break;
                 default:
@@ -252,6 +675,10 @@ public class Main {
 
     /**
      * Displays the admin menu and handles admin operations.
+     * Each operation reads its input first and holds the library lock only
+     * while it reads or changes the lists, so it never sees a batch of returns
+     * that the ReturnDispatcher has only partly committed, and the dispatcher
+     * never waits for someone to finish typing.
      */
      private static void adminMenu() {
         boolean running = true;
@@ -263,7 +690,12 @@ public class Main {
             System.out.println("4. View Borrowed Item List");
             System.out.println("5. View Borrower List");
             System.out.println("6. View Transaction History");
-            System.out.println("7. Back to Main Menu");
+            System.out.println("7. Import Items From File");
+            System.out.println("8. View Title Lookup Statistics");
+            System.out.println("9. View Overdue Items");
+            System.out.println("10. Reshelve Returned Items");
+            System.out.println("11. Set Borrower Account Type");
+            System.out.println("12. Back to Main Menu");
             System.out.print("Choose an option: ");
 
             int choice;
@@ -284,18 +716,43 @@ public class Main {
                     removeItem();
                     break;
                 case 3:
-                    itemList.displayItems();
+                    viewItems();
                     break;
                 case 4:
-                    borrowedItemList.displayBorrowedItems();
+                    synchronized (libraryLock) {
+                        borrowedItemList.displayBorrowedItems();
+                    }
                     break;
                 case 5:
-                    borrowerList.displayBorrowers();
+                    synchronized (libraryLock) {
+                        borrowerList.displayBorrowers();
+                    }
                     break;
                 case 6:
-                    transactionList.displayTransactions();
+                    synchronized (libraryLock) {
+                        transactionList.displayTransactions();
+                    }
                     break;
                 case 7:
+                    importItems();
+                    break;
+                case 8:
+                    synchronized (libraryLock) {
+                        itemList.displayFilterStats();
+                    }
+                    break;
+                case 9:
+                    synchronized (libraryLock) {
+                        borrowedItemList.displayOverdue(System.currentTimeMillis());
+                    }
+                    break;
+                case 10:
+                    reshelveItems();
+                    break;
+                case 11:
+                    setAccountType();
+                    break;
+                case 12:
                     running = false;
                     break;
                 default:
@@ -307,6 +764,10 @@ public class Main {
 
     /**
      * Displays the borrower menu and handles borrower operations.
+     * Each operation reads its input first and holds the library lock only
+     * while it reads or changes the lists, so it never sees a batch of returns
+     * that the ReturnDispatcher has only partly committed, and the dispatcher
+     * never waits for someone to finish typing.
      */
     private static void borrowerMenu() {
         boolean running = true;
@@ -317,7 +778,11 @@ public class Main {
             System.out.println("3. View Borrowed Item List");
             System.out.println("4. View Borrower Queue");
             System.out.println("5. Enqueue Borrower"); 
-            System.out.println("6. Back to Main Menu");
+            System.out.println("6. Search Items by Author");
+            System.out.println("7. Search Items by Keyword");
+            System.out.println("8. Browse Magazine Issues");
+            System.out.println("9. Cancel Hold");
+            System.out.println("10. Back to Main Menu");
             System.out.print("Choose an option: ");
         
 
@@ -339,15 +804,32 @@ public class Main {
                     returnItem();
                     break;
                 case 3:
-                    borrowedItemList.displayBorrowedItems();
+                    synchronized (libraryLock) {
+                        borrowedItemList.displayBorrowedItems();
+                    }
                     break;
                 case 4:
-                    borrowerQueue.displayQueue();
+                    // The queue prints borrower names from the registry.
+                    synchronized (libraryLock) {
+                        borrowerQueue.displayQueue();
+                    }
                     break;
                 case 5:
                     enqueueBorrower();
                     break;
-                case 6: 
+                case 6:
+                    searchByAuthor();
+                    break;
+                case 7:
+                    searchByKeyword();
+                    break;
+                case 8:
+                    browseIssues();
+                    break;
+                case 9:
+                    cancelHold();
+                    break;
+                case 10: 
                     running = false;
                     break;
                 default:
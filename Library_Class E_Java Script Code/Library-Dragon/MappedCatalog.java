@@ -0,0 +1,865 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A range of a file mapped into memory as a series of 1 GB segments, so that
+ * regions larger than a single MappedByteBuffer can be addressed with long offsets.
+ * A value read or written by one call must not cross a segment boundary.
+ */
+class MappedRegion {
+    static final int SEGMENT_SHIFT = 30;
+    static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Constructor for MappedRegion.
+     * @param channel The channel of the file to map.
+     * @param position The offset of the region in the file.
+     * @param size The size of the region in bytes.
+     * @throws IOException If the file cannot be mapped.
+     */
+    MappedRegion(FileChannel channel, long position, long size) throws IOException {
+        int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[Math.max(count, 1)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            long length = Math.min(SEGMENT_SIZE, size - start);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position + start, Math.max(length, 0));
+        }
+    }
+
+    /**
+     * @param offset The offset in the region.
+     * @return The int at the offset.
+     */
+    int getInt(long offset) {
+        return segments[(int) (offset >>> SEGMENT_SHIFT)].getInt((int) (offset & SEGMENT_MASK));
+    }
+
+    /**
+     * @param offset The offset in the region.
+     * @param value The int to write at the offset.
+     */
+    void putInt(long offset, int value) {
+        segments[(int) (offset >>> SEGMENT_SHIFT)].putInt((int) (offset & SEGMENT_MASK), value);
+    }
+
+    /**
+     * @param offset The offset in the region.
+     * @return The long at the offset.
+     */
+    long getLong(long offset) {
+        return segments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & SEGMENT_MASK));
+    }
+
+    /**
+     * @param offset The offset in the region.
+     * @param value The long to write at the offset.
+     */
+    void putLong(long offset, long value) {
+        segments[(int) (offset >>> SEGMENT_SHIFT)].putLong((int) (offset & SEGMENT_MASK), value);
+    }
+
+    /**
+     * @param offset The offset in the region.
+     * @return The byte at the offset.
+     */
+    byte get(long offset) {
+        return segments[(int) (offset >>> SEGMENT_SHIFT)].get((int) (offset & SEGMENT_MASK));
+    }
+
+    /**
+     * @param offset The offset in the region.
+     * @param value The byte to write at the offset.
+     */
+    void put(long offset, byte value) {
+        segments[(int) (offset >>> SEGMENT_SHIFT)].put((int) (offset & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Copies bytes out of the region.
+     * @param offset The offset in the region.
+     * @param target The array to copy into.
+     */
+    void get(long offset, byte[] target) {
+        MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+        int position = (int) (offset & SEGMENT_MASK);
+        for (int i = 0; i < target.length; i++) {
+            target[i] = segment.get(position + i);
+        }
+    }
+
+    /**
+     * Copies bytes into the region.
+     * @param offset The offset in the region.
+     * @param source The bytes to copy.
+     */
+    void put(long offset, byte[] source) {
+        MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+        int position = (int) (offset & SEGMENT_MASK);
+        for (int i = 0; i < source.length; i++) {
+            segment.put(position + i, source[i]);
+        }
+    }
+
+    /**
+     * Writes changes in the region back to the file.
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+}
+
+/**
+ * Read-write view of one record of a MappedCatalog through the LibraryItem API.
+ * The view holds only the catalog and the record number; every getter reads the file.
+ */
+class MappedItemView extends LibraryItem {
+    private final MappedCatalog catalog;
+
+    /**
+     * Constructor for MappedItemView.
+     * @param catalog The catalog holding the item.
+     * @param record The record number of the item.
+     */
+    MappedItemView(MappedCatalog catalog, int record) {
+        super(null, null, 0);
+        this.catalog = catalog;
+        setId(record);
+    }
+
+    /**
+     * @return The title of the item.
+     */
+    @Override
+    public String getTitle() {
+        return catalog.getTitle(getId());
+    }
+
+    /**
+     * @return The author of the item.
+     */
+    @Override
+    public String getAuthor() {
+        return catalog.getAuthor(getId());
+    }
+
+    /**
+     * @return The number of copies in stock.
+     */
+    @Override
+    public int getStock() {
+        return catalog.getStock(getId());
+    }
+
+    /**
+     * Sets the number of copies in stock.
+     * @param stock The new stock quantity.
+     */
+    @Override
+    public void setStock(int stock) {
+        catalog.setStock(getId(), stock);
+    }
+
+    /**
+     * Takes one copy out of stock if there is one.
+     * @return True if a copy was reserved, false if the item is out of stock.
+     */
+    @Override
+    public boolean tryReserve() {
+        return catalog.tryReserve(getId());
+    }
+
+    /**
+     * Puts one copy back into stock.
+     */
+    @Override
+    public void release() {
+        catalog.release(getId());
+    }
+
+    /**
+     * Takes one copy out of stock and claims an available copy id.
+     * @return The copy id of the claimed copy, or -1 if the item is out of stock.
+     */
+    @Override
+    public int claimCopy() {
+        return catalog.claimCopy(getId());
+    }
+
+    /**
+     * Puts a claimed copy back on the shelf and into stock.
+     * @param copyId The copy id returned by claimCopy.
+     * @return True if the copy was out, false if it is not one of this item's copies or is already in.
+     */
+    @Override
+    public boolean returnCopy(int copyId) {
+        return catalog.returnCopy(getId(), copyId);
+    }
+
+    /**
+     * Displays the item's information in the same format as Book and Magazine.
+     */
+    @Override
+    public void displayInfo() {
+        int record = getId();
+        if (catalog.getType(record) == MappedCatalog.TYPE_BOOK) {
+            System.out.println("Type: Book");
+            System.out.println("Title: " + getTitle() + ", Author: " + getAuthor() + ", Stock: " + getStock() + ", Publisher: " + catalog.getDetail(record));
+        } else {
+            System.out.println("Type: Magazine");
+            System.out.println("Title: " + getTitle() + ", Author: " + getAuthor() + ", Stock: " + getStock() + ", Issue: " + catalog.getDetail(record));
+        }
+    }
+}
+
+/**
+ * Catalog backend that keeps every item in a memory-mapped file instead of on the Java heap.
+ *
+ * The file starts with a header, followed by fixed-width item records, an
+ * open-addressing title table and a string heap:
+ *
+ *   header:  magic, version, record capacity, record count, live count,
+ *            table size, string heap capacity, string heap used, next copy id
+ *   record:  title offset (8), author offset (8), detail offset (8),
+ *            copies offset (8), stock (4), type (1), padding (3)
+ *   table:   record number + 1 (4), title hash (4); 0 marks an empty slot and -1 a removed item
+ *   strings: length (4) followed by the UTF-8 bytes
+ *   copies:  first copy id (4), copy count (4), then one bit per copy in
+ *            longs, set while the copy is on the shelf
+ *
+ * The copy blocks live in the string heap next to the strings. Lookups, stock
+ * updates and copy claims read and write the mapped file directly, so the
+ * heap holds only the buffers and the catalog survives a restart: opening an
+ * existing file maps it again without any loading step. Capacities are fixed
+ * when the file is created.
+ *
+ * Adding and removing items hold the write lock; every other method holds the
+ * read lock. Since mapped memory offers no compare-and-set in this API, the
+ * stock and copy bits of a record are also guarded by one of a small set of
+ * striped locks. This is a benchmark-only backend, see CatalogStore.
+ */
+class MappedCatalog implements CatalogStore {
+    static final byte TYPE_REMOVED = 0;
+    static final byte TYPE_BOOK = 1;
+    static final byte TYPE_MAGAZINE = 2;
+
+    private static final int MAGIC = 0x4C494231;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 40;
+    private static final int SLOT_SIZE = 8;
+
+    private static final int HEADER_RECORD_CAPACITY = 8;
+    private static final int HEADER_RECORD_COUNT = 12;
+    private static final int HEADER_LIVE_COUNT = 16;
+    private static final int HEADER_TABLE_SIZE = 20;
+    private static final int HEADER_HEAP_CAPACITY = 24;
+    private static final int HEADER_HEAP_USED = 32;
+    private static final int HEADER_NEXT_COPY_ID = 40;
+
+    private static final int RECORD_TITLE = 0;
+    private static final int RECORD_AUTHOR = 8;
+    private static final int RECORD_DETAIL = 16;
+    private static final int RECORD_COPIES = 24;
+    private static final int RECORD_STOCK = 32;
+    private static final int RECORD_TYPE = 36;
+
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+    private static final int STOCK_LOCKS = 64;
+
+    private final RandomAccessFile file;
+    private final MappedRegion header;
+    private final MappedRegion records;
+    private final MappedRegion table;
+    private final MappedRegion strings;
+    private final int recordCapacity;
+    private final int tableSize;
+    private final long heapCapacity;
+    private final Object[] stockLocks;
+    private final ReentrantReadWriteLock lock;
+
+    /**
+     * Constructor for MappedCatalog. Use open to create or reopen a catalog file.
+     * @param file The open catalog file.
+     * @param recordCapacity The maximum number of records.
+     * @param tableSize The number of slots in the title table.
+     * @param heapCapacity The size of the string heap in bytes.
+     * @throws IOException If the file cannot be mapped.
+     */
+    private MappedCatalog(RandomAccessFile file, int recordCapacity, int tableSize, long heapCapacity) throws IOException {
+        this.file = file;
+        this.recordCapacity = recordCapacity;
+        this.tableSize = tableSize;
+        this.heapCapacity = heapCapacity;
+        stockLocks = new Object[STOCK_LOCKS];
+        for (int i = 0; i < STOCK_LOCKS; i++) {
+            stockLocks[i] = new Object();
+        }
+        lock = new ReentrantReadWriteLock();
+        FileChannel channel = file.getChannel();
+        long recordsStart = HEADER_SIZE;
+        long tableStart = recordsStart + (long) recordCapacity * RECORD_SIZE;
+        long stringsStart = tableStart + (long) tableSize * SLOT_SIZE;
+        file.setLength(Math.max(file.length(), stringsStart + heapCapacity));
+        header = new MappedRegion(channel, 0, HEADER_SIZE);
+        records = new MappedRegion(channel, recordsStart, (long) recordCapacity * RECORD_SIZE);
+        table = new MappedRegion(channel, tableStart, (long) tableSize * SLOT_SIZE);
+        strings = new MappedRegion(channel, stringsStart, heapCapacity);
+    }
+
+    /**
+     * Opens a catalog file, creating it if it does not exist yet.
+     * The capacities are only used when the file is created.
+     * @param path The path of the catalog file.
+     * @param recordCapacity The maximum number of items.
+     * @param heapCapacity The size of the string heap in bytes.
+     * @return The opened catalog.
+     * @throws IOException If the file cannot be created, opened or mapped, or is not a catalog file.
+     */
+    static MappedCatalog open(String path, int recordCapacity, long heapCapacity) throws IOException {
+        boolean exists = new File(path).length() >= HEADER_SIZE;
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            if (exists) {
+                if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+                    throw new IOException(path + " is not a catalog file");
+                }
+                int capacity = file.readInt();
+                file.seek(HEADER_TABLE_SIZE);
+                int slots = file.readInt();
+                long heap = file.readLong();
+                return new MappedCatalog(file, capacity, slots, heap);
+            }
+            int slots = 16;
+            while (slots < recordCapacity * 2L) {
+                slots <<= 1;
+            }
+            MappedCatalog catalog = new MappedCatalog(file, recordCapacity, slots, heapCapacity);
+            catalog.header.putInt(0, MAGIC);
+            catalog.header.putInt(4, VERSION);
+            catalog.header.putInt(HEADER_RECORD_CAPACITY, recordCapacity);
+            catalog.header.putInt(HEADER_RECORD_COUNT, 0);
+            catalog.header.putInt(HEADER_LIVE_COUNT, 0);
+            catalog.header.putInt(HEADER_TABLE_SIZE, slots);
+            catalog.header.putLong(HEADER_HEAP_CAPACITY, heapCapacity);
+            catalog.header.putLong(HEADER_HEAP_USED, 0);
+            catalog.header.putInt(HEADER_NEXT_COPY_ID, 0);
+            return catalog;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a book or magazine to the catalog and gives its copies copy ids.
+     * @param item The Book or Magazine to add. Its fields are copied into the file.
+     * @return The record number of the new item, or -1 if it could not be added.
+     */
+    @Override
+    public int addItem(LibraryItem item) {
+        byte type;
+        String detail;
+        if (item instanceof Book) {
+            type = TYPE_BOOK;
+            detail = ((Book) item).getPublisher();
+        } else if (item instanceof Magazine) {
+            type = TYPE_MAGAZINE;
+            detail = ((Magazine) item).getIssue();
+        } else {
+            System.out.println("Error: Only books and magazines can be stored in a mapped catalog.");
+            return -1;
+        }
+        byte[] title = item.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] author = item.getAuthor().getBytes(StandardCharsets.UTF_8);
+        byte[] detailBytes = detail.getBytes(StandardCharsets.UTF_8);
+        int copies = Math.max(0, item.getStock());
+        lock.writeLock().lock();
+        try {
+            int record = header.getInt(HEADER_RECORD_COUNT);
+            if (record == recordCapacity) {
+                System.out.println("Error: Catalog file is full.");
+                return -1;
+            }
+            long titleOffset = writeString(title);
+            long authorOffset = titleOffset < 0 ? -1 : writeString(author);
+            long detailOffset = authorOffset < 0 ? -1 : writeString(detailBytes);
+            long copiesOffset = detailOffset < 0 ? -1 : writeCopies(copies);
+            if (copiesOffset < 0) {
+                System.out.println("Error: Catalog string heap is full.");
+                return -1;
+            }
+
+            long position = (long) record * RECORD_SIZE;
+            records.putLong(position + RECORD_TITLE, titleOffset);
+            records.putLong(position + RECORD_AUTHOR, authorOffset);
+            records.putLong(position + RECORD_DETAIL, detailOffset);
+            records.putLong(position + RECORD_COPIES, copiesOffset);
+            records.putInt(position + RECORD_STOCK, copies);
+            records.put(position + RECORD_TYPE, type);
+            insertSlot(record, hash(title));
+
+            header.putInt(HEADER_RECORD_COUNT, record + 1);
+            header.putInt(HEADER_LIVE_COUNT, header.getInt(HEADER_LIVE_COUNT) + 1);
+            return record;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts a record into the title table at the first empty slot of its probe sequence.
+     * @param record The record number.
+     * @param h The hash of the record's title.
+     */
+    private void insertSlot(int record, int h) {
+
+        int mask = tableSize - 1;
+        int slot = h & mask;
+        while (table.getInt((long) slot * SLOT_SIZE) != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table.putInt((long) slot * SLOT_SIZE + 4, h);
+        table.putInt((long) slot * SLOT_SIZE, record + 1);
+    }
+
+    /**
+     * Reserves space at the end of the string heap. A block never crosses a
+     * segment boundary; it moves to the next segment instead.
+     * @param length The size of the block in bytes.
+     * @return The offset of the block, or -1 if the heap is full.
+     */
+    private long allocate(long length) {
+        long offset = header.getLong(HEADER_HEAP_USED);
+        long segmentEnd = ((offset >>> MappedRegion.SEGMENT_SHIFT) + 1) << MappedRegion.SEGMENT_SHIFT;
+        if (offset + length > segmentEnd) {
+            offset = segmentEnd;
+        }
+        if (offset + length > heapCapacity) {
+            return -1;
+        }
+        header.putLong(HEADER_HEAP_USED, offset + length);
+        return offset;
+    }
+
+    /**
+     * Appends a length-prefixed string to the string heap.
+     * @param bytes The UTF-8 bytes of the string.
+     * @return The offset of the string, or -1 if the heap is full.
+     */
+    private long writeString(byte[] bytes) {
+        long offset = allocate(4L + bytes.length);
+        if (offset >= 0) {
+            strings.putInt(offset, bytes.length);
+            strings.put(offset + 4, bytes);
+        }
+        return offset;
+    }
+
+    /**
+     * Appends a copy block to the string heap, giving the copies the next copy
+     * ids and marking them all available.
+     * @param copies The number of copies.
+     * @return The offset of the block, or -1 if the heap is full.
+     */
+    private long writeCopies(int copies) {
+        int words = (copies + 63) >>> 6;
+        long offset = allocate(8L + 8L * words);
+        if (offset < 0) {
+            return -1;
+        }
+        int firstCopyId = header.getInt(HEADER_NEXT_COPY_ID);
+        strings.putInt(offset, firstCopyId);
+        strings.putInt(offset + 4, copies);
+        for (int i = 0; i < words; i++) {
+            int bits = Math.min(64, copies - (i << 6));
+            strings.putLong(offset + 8 + 8L * i, bits == 64 ? -1L : (1L << bits) - 1);
+        }
+        header.putInt(HEADER_NEXT_COPY_ID, Math.addExact(firstCopyId, copies));
+        return offset;
+    }
+
+    /**
+     * @param offset The offset of a string in the string heap.
+     * @return The string.
+     */
+    private String readString(long offset) {
+        byte[] bytes = new byte[strings.getInt(offset)];
+        strings.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hashes UTF-8 title bytes.
+     * @param bytes The title bytes.
+     * @return The hash code of the title.
+     */
+    private static int hash(byte[] bytes) {
+        int h = 0x811C9DC5;
+        for (byte b : bytes) {
+            h = (h ^ b) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Finds the table slot of the first live item with a title.
+     * @param title The title as UTF-8 bytes.
+     * @return The slot number, or -1 if no item has the title.
+     */
+    private int findSlot(byte[] title) {
+        int h = hash(title);
+        int mask = tableSize - 1;
+        int slot = h & mask;
+        int entry;
+        while ((entry = table.getInt((long) slot * SLOT_SIZE)) != EMPTY) {
+            if (entry != DELETED && table.getInt((long) slot * SLOT_SIZE + 4) == h && titleEquals(entry - 1, title)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param record The record number.
+     * @param title A title as UTF-8 bytes.
+     * @return True if the record has the title.
+     */
+    private boolean titleEquals(int record, byte[] title) {
+        long offset = records.getLong((long) record * RECORD_SIZE + RECORD_TITLE);
+        if (strings.getInt(offset) != title.length) {
+            return false;
+        }
+        for (int i = 0; i < title.length; i++) {
+            if (strings.get(offset + 4 + i) != title[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds an item by its title.
+     * @param title The title of the item to search for.
+     * @return The record number of the item, or -1 if it is not in the catalog.
+     */
+    @Override
+    public int findItem(String title) {
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(bytes);
+            return slot < 0 ? -1 : table.getInt((long) slot * SLOT_SIZE) - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a view of an item through the LibraryItem API.
+     * @param record The record number.
+     * @return The view, or null if there is no live item with that record number.
+     */
+    @Override
+    public LibraryItem getItem(int record) {
+        lock.readLock().lock();
+        try {
+            if (!isLive(record)) {
+                return null;
+            }
+            return new MappedItemView(this, record);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param record A record number.
+     * @return True if the record exists and has not been removed.
+     */
+    private boolean isLive(int record) {
+        return record >= 0 && record < header.getInt(HEADER_RECORD_COUNT) && getType(record) != TYPE_REMOVED;
+    }
+
+    /**
+     * Removes an item by its title.
+     * If the item has multiple copies, one copy is claimed and never returned.
+     * If it's the last copy, the item is removed from the catalog.
+     * @param title The title of the item to be removed.
+     */
+    @Override
+    public void removeItem(String title) {
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(bytes);
+            if (slot < 0) {
+                return;
+            }
+            int record = table.getInt((long) slot * SLOT_SIZE) - 1;
+            if (getStock(record) > 1 && claimCopy(record) >= 0) {
+                return;
+            }
+            table.putInt((long) slot * SLOT_SIZE, DELETED);
+            records.put((long) record * RECORD_SIZE + RECORD_TYPE, TYPE_REMOVED);
+            header.putInt(HEADER_LIVE_COUNT, header.getInt(HEADER_LIVE_COUNT) - 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes one copy of an item out of stock and claims the first available copy id.
+     * The stock and the copy bits change together under the record's stock lock.
+     * @param record The record number.
+     * @return The copy id of the claimed copy, or -1 if the item is out of stock or removed.
+     */
+    @Override
+    public int claimCopy(int record) {
+        lock.readLock().lock();
+        try {
+            if (!isLive(record)) {
+                return -1;
+            }
+            long copies = records.getLong((long) record * RECORD_SIZE + RECORD_COPIES);
+            int words = (strings.getInt(copies + 4) + 63) >>> 6;
+            synchronized (stockLocks[record & (STOCK_LOCKS - 1)]) {
+                int stock = getStock(record);
+                if (stock <= 0) {
+                    return -1;
+                }
+                for (int i = 0; i < words; i++) {
+                    long position = copies + 8 + 8L * i;
+                    long word = strings.getLong(position);
+                    if (word != 0) {
+                        strings.putLong(position, word & (word - 1));
+                        records.putInt((long) record * RECORD_SIZE + RECORD_STOCK, stock - 1);
+                        return strings.getInt(copies) + (i << 6) + Long.numberOfTrailingZeros(word);
+                    }
+                }
+                return -1;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Puts a claimed copy back on the shelf and into stock.
+     * @param record The record number.
+     * @param copyId The copy id returned by claimCopy.
+     * @return True if the copy was out, false if it is not one of the item's copies or is already in.
+     */
+    @Override
+    public boolean returnCopy(int record, int copyId) {
+        lock.readLock().lock();
+        try {
+            if (record < 0 || record >= header.getInt(HEADER_RECORD_COUNT)) {
+                return false;
+            }
+            long copies = records.getLong((long) record * RECORD_SIZE + RECORD_COPIES);
+            int offset = copyId - strings.getInt(copies);
+            if (offset < 0 || offset >= strings.getInt(copies + 4)) {
+                return false;
+            }
+            long position = copies + 8 + 8L * (offset >>> 6);
+            long bit = 1L << (offset & 63);
+            synchronized (stockLocks[record & (STOCK_LOCKS - 1)]) {
+                long word = strings.getLong(position);
+                if ((word & bit) != 0) {
+                    return false;
+                }
+                strings.putLong(position, word | bit);
+                long stock = (long) record * RECORD_SIZE + RECORD_STOCK;
+                records.putInt(stock, records.getInt(stock) + 1);
+                return true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes one copy of an item out of stock, never going below zero.
+     * @param record The record number.
+     * @return True if a copy was reserved, false if the item is out of stock.
+     */
+    boolean tryReserve(int record) {
+        lock.readLock().lock();
+        try {
+            synchronized (stockLocks[record & (STOCK_LOCKS - 1)]) {
+                int stock = getStock(record);
+                if (stock <= 0) {
+                    return false;
+                }
+                setStock(record, stock - 1);
+                return true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Puts one copy of an item back into stock.
+     * @param record The record number.
+     */
+    void release(int record) {
+        lock.readLock().lock();
+        try {
+            synchronized (stockLocks[record & (STOCK_LOCKS - 1)]) {
+                setStock(record, getStock(record) + 1);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param record The record number.
+     * @return The title of the item.
+     */
+    String getTitle(int record) {
+        lock.readLock().lock();
+        try {
+            return readString(records.getLong((long) record * RECORD_SIZE + RECORD_TITLE));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param record The record number.
+     * @return The author of the item.
+     */
+    String getAuthor(int record) {
+        lock.readLock().lock();
+        try {
+            return readString(records.getLong((long) record * RECORD_SIZE + RECORD_AUTHOR));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param record The record number.
+     * @return The publisher of a book or the issue of a magazine.
+     */
+    String getDetail(int record) {
+        lock.readLock().lock();
+        try {
+            return readString(records.getLong((long) record * RECORD_SIZE + RECORD_DETAIL));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param record The record number.
+     * @return The type tag of the item.
+     */
+    byte getType(int record) {
+        lock.readLock().lock();
+        try {
+            return records.get((long) record * RECORD_SIZE + RECORD_TYPE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param record The record number.
+     * @return The number of copies in stock.
+     */
+    @Override
+    public int getStock(int record) {
+        lock.readLock().lock();
+        try {
+            return records.getInt((long) record * RECORD_SIZE + RECORD_STOCK);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the number of copies in stock.
+     * @param record The record number.
+     * @param stock The new stock quantity.
+     */
+    void setStock(int record, int stock) {
+        lock.readLock().lock();
+        try {
+            synchronized (stockLocks[record & (STOCK_LOCKS - 1)]) {
+                records.putInt((long) record * RECORD_SIZE + RECORD_STOCK, stock);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Displays all items in the catalog in record order.
+     */
+    @Override
+    public void displayItems() {
+        lock.readLock().lock();
+        try {
+            int count = header.getInt(HEADER_RECORD_COUNT);
+            if (size() == 0) {
+                System.out.println("No items in the list.");
+                return;
+            }
+            for (int record = 0; record < count; record++) {
+                if (getType(record) != TYPE_REMOVED) {
+                    new MappedItemView(this, record).displayInfo();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of items in the catalog.
+     */
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return header.getInt(HEADER_LIVE_COUNT);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes all changes back to the catalog file.
+     */
+    void force() {
+        header.force();
+        records.force();
+        table.force();
+        strings.force();
+    }
+
+    /**
+     * Writes all changes back and closes the catalog file.
+     * @throws IOException If the file cannot be closed.
+     */
+    void close() throws IOException {
+        force();
+        file.close();
+    }
+}
@@ -0,0 +1,261 @@
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Event saying that a copy has been returned and is free to lend again.
+ * The hold that will get the copy is filled in when the event is matched.
+ */
+class ReturnEvent {
+    final LibraryItem item;
+    final int copyId;
+    WaitlistNode hold;
+
+    /**
+     * Constructor for ReturnEvent.
+     * @param item The LibraryItem the copy belongs to.
+     * @param copyId The copy id of the returned copy.
+     */
+    ReturnEvent(LibraryItem item, int copyId) {
+        this.item = item;
+        this.copyId = copyId;
+        hold = null;
+    }
+}
+
+/**
+ * Background thread that hands returned copies to the borrowers waiting for them.
+ *
+ * Returns only post a ReturnEvent and go on. The dispatcher thread takes the
+ * events in batches of up to MAX_BATCH and commits the whole batch in one
+ * pass while holding the library lock: each copy is matched with the first
+ * hold on its title whose borrower can borrow another item, and becomes a
+ * loan of that borrower. Borrowers at their limit are passed over and keep
+ * their place in the queue. Each copy nobody can take goes back into stock,
+ * and those copies are then pushed into the returns inbox for reshelving,
+ * after the lock is released. Taking the lock once per batch rather than
+ * once per copy keeps a mass check-in fast, and the console only waits for
+ * the lock while a batch is being committed.
+ */
+class ReturnDispatcher implements Runnable {
+    private static final int MAX_BATCH = 4096;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final LibraryItemList itemList;
+    private final BorrowedItemList borrowedItemList;
+    private final BorrowerList borrowerList;
+    private final TransactionList transactionList;
+    private final ConcurrentWaitlist waitlist;
+    private final BorrowerRegistry registry;
+    private final ReturnsInbox returnedItems;
+    private final Object libraryLock;
+    private final boolean announce;
+    private final LinkedBlockingQueue<ReturnEvent> events;
+    private final HoldFilter canBorrow;
+    private long lent;
+    private long shelved;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Constructor for ReturnDispatcher.
+     * @param itemList The catalog the copies belong to.
+     * @param borrowedItemList The list the new loans are added to.
+     * @param borrowerList The borrowers the new loans are added to.
+     * @param transactionList The transaction history.
+     * @param waitlist The waitlist holds are taken from.
+     * @param registry The BorrowerRegistry used for borrower names.
+     * @param returnedItems The inbox of copies that go back on the shelf.
+     * @param libraryLock The lock that guards the lists above.
+     * @param announce True to print a line for every copy handed to a waiting borrower.
+     */
+    ReturnDispatcher(LibraryItemList itemList, BorrowedItemList borrowedItemList, BorrowerList borrowerList,
+            TransactionList transactionList, ConcurrentWaitlist waitlist, BorrowerRegistry registry,
+            ReturnsInbox returnedItems, Object libraryLock, boolean announce) {
+        this.itemList = itemList;
+        this.borrowedItemList = borrowedItemList;
+        this.borrowerList = borrowerList;
+        this.transactionList = transactionList;
+        this.waitlist = waitlist;
+        this.registry = registry;
+        this.returnedItems = returnedItems;
+        this.libraryLock = libraryLock;
+        this.announce = announce;
+        events = new LinkedBlockingQueue<>();
+        canBorrow = new HoldFilter() {
+            @Override
+            public boolean accepts(WaitlistNode hold) {
+                return borrowerList.canBorrow(hold.borrowerId);
+            }
+        };
+        lent = 0;
+        shelved = 0;
+        running = false;
+        thread = null;
+    }
+
+    /**
+     * Starts the dispatcher thread. It is a daemon thread, so it does not keep the program running.
+     */
+    synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "return-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the dispatcher thread, waits for it to finish, and dispatches any events left.
+     * Never blocks on a full returns inbox; copies it has no room for stay in stock unplanned.
+     */
+    synchronized void stop() {
+        if (thread != null) {
+            running = false;
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        flush();
+    }
+
+    /**
+     * Posts the return of a copy. Safe to call from any thread; returns at once.
+     * @param item The LibraryItem the copy belongs to.
+     * @param copyId The copy id of the returned copy.
+     */
+    void copyAvailable(LibraryItem item, int copyId) {
+        events.add(new ReturnEvent(item, copyId));
+    }
+
+    /**
+     * Dispatches events in batches until the dispatcher is stopped.
+     */
+    @Override
+    public void run() {
+        List<ReturnEvent> batch = new ArrayList<>(MAX_BATCH);
+        while (running) {
+            try {
+                batch.add(events.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            events.drainTo(batch, MAX_BATCH - 1);
+            dispatch(batch, true);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Dispatches every event posted so far on the calling thread. Copies
+     * are offered to the returns inbox without waiting for room, so a full
+     * BLOCK inbox cannot hang the caller.
+     * @return The number of copies lent to waiting borrowers.
+     */
+    int flush() {
+        List<ReturnEvent> batch = new ArrayList<>();
+        int count = 0;
+        while (events.drainTo(batch, MAX_BATCH) > 0) {
+            count += dispatch(batch, false);
+            batch.clear();
+        }
+        return count;
+    }
+
+    /**
+     * Matches a batch of returned copies with holds and commits the result in one pass.
+     * @param batch The events to dispatch.
+     * @param mayBlock False to turn copies away rather than wait when the returns inbox is full.
+     * @return The number of copies lent to waiting borrowers.
+     */
+    int dispatch(List<ReturnEvent> batch, boolean mayBlock) {
+        long now = System.currentTimeMillis();
+        String borrowDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(now));
+        int count = 0;
+        synchronized (libraryLock) {
+            for (ReturnEvent event : batch) {
+                // Matched under the lock, so a loan made earlier in the batch counts towards the limit.
+                event.hold = waitlist.dequeue(event.item.getTitle(), canBorrow);
+                if (event.hold != null) {
+                    lend(event, borrowDate, now);
+                    count++;
+                } else {
+                    itemList.returnCopy(event.item, event.copyId);
+                }
+            }
+            lent += count;
+            shelved += batch.size() - count;
+        }
+        // Outside the library lock, so a blocking inbox can be drained by a thread that needs the lock.
+        for (ReturnEvent event : batch) {
+            if (event.hold == null) {
+                // The copy is back in stock even if the inbox turns it away.
+                if (mayBlock) {
+                    returnedItems.push(event.item);
+                } else {
+                    returnedItems.offer(event.item);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lends a returned copy to the borrower of the hold it was matched with.
+     * Must be called while holding the library lock, and the borrower must be
+     * able to borrow another item.
+     * @param event The matched event.
+     * @param borrowDate The borrow date of the loan.
+     * @param now The current time, in epoch milliseconds.
+     */
+    private void lend(ReturnEvent event, String borrowDate, long now) {
+        int borrowerId = event.hold.borrowerId;
+        String name = registry.getName(borrowerId);
+        Borrower borrower = borrowerList.findBorrower(borrowerId);
+        if (borrower == null) {
+            borrower = new Borrower(borrowerId, name);
+            borrowerList.addBorrower(borrower);
+        }
+        long dueDate = now + borrower.getPolicy().getLoanDays() * DAY_MILLIS;
+        BorrowedItemNode loan = borrowedItemList.borrowItem(event.item, event.copyId, borrowerId, borrowDate, dueDate);
+        borrowerList.addLoan(loan);
+        transactionList.addTransaction(event.item, borrower, borrowDate, "");
+        if (announce) {
+            System.out.println("Copy " + event.copyId + " of " + event.item.getTitle()
+                    + " lent to the next borrower: " + name);
+        }
+    }
+
+    /**
+     * @return The number of returned copies waiting to be dispatched.
+     */
+    int pendingCount() {
+        return events.size();
+    }
+
+    /**
+     * @return The number of returned copies lent to waiting borrowers so far.
+     */
+    long lentCount() {
+        synchronized (libraryLock) {
+            return lent;
+        }
+    }
+
+    /**
+     * @return The number of returned copies put back into stock so far.
+     */
+    long shelvedCount() {
+        synchronized (libraryLock) {
+            return shelved;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Sort key of a magazine issue, parsed from the free-form issue text.
+ *
+ * The numbers in the text are read in order, with month names counting as
+ * their month number, so "No. 12" becomes [12], "Vol. 3 No. 4" becomes [3, 4]
+ * and "2024-05" becomes [2024, 5]. A four-digit year that is not the first
+ * number is moved to the front, so "May 2024" also becomes [2024, 5]. Keys
+ * are ordered by their numbers, a key before the keys it is a prefix of, and
+ * then by the normalized text.
+ */
+class IssueKey implements Comparable<IssueKey> {
+    private static final String[] MONTHS = {
+        "january", "february", "march", "april", "may", "june",
+        "july", "august", "september", "october", "november", "december"
+    };
+
+    final int[] numbers;
+    final String text;
+
+    /**
+     * Constructor for IssueKey.
+     * @param numbers The numbers of the issue, most significant first.
+     * @param text The normalized issue text.
+     */
+    private IssueKey(int[] numbers, String text) {
+        this.numbers = numbers;
+        this.text = text;
+    }
+
+    /**
+     * Parses the issue text of a magazine.
+     * @param issue The issue number or date as entered.
+     * @return The key of the issue.
+     */
+    static IssueKey parse(String issue) {
+        String text = CatalogText.normalize(issue);
+        int[] numbers = new int[4];
+        int count = 0;
+        int yearAt = -1;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int start = i;
+            int value = -1;
+            if (c >= '0' && c <= '9') {
+                long number = 0;
+                while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                    number = Math.min(Integer.MAX_VALUE - 1, number * 10 + (text.charAt(i) - '0'));
+                    i++;
+                }
+                value = (int) number;
+                if (i - start == 4 && value >= 1000 && value <= 2999 && yearAt < 0) {
+                    yearAt = count;
+                }
+            } else if (Character.isLetter(c)) {
+                while (i < text.length() && Character.isLetter(text.charAt(i))) {
+                    i++;
+                }
+                value = month(text.substring(start, i));
+            } else {
+                i++;
+            }
+            if (value >= 0) {
+                if (count == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, count * 2);
+                }
+                numbers[count++] = value;
+            }
+        }
+        numbers = Arrays.copyOf(numbers, count);
+        if (yearAt > 0) {
+            int year = numbers[yearAt];
+            System.arraycopy(numbers, 0, numbers, 1, yearAt);
+            numbers[0] = year;
+        }
+        return new IssueKey(numbers, text);
+    }
+
+    /**
+     * Makes a key that sorts before every issue with the same numbers as an issue text,
+     * whatever its text, so that "May 2024" as the start of a range includes "2024-05".
+     * @param issue The issue text of the start of the range.
+     * @return The lower bound key.
+     */
+    static IssueKey lowerBound(String issue) {
+        return new IssueKey(parse(issue).numbers, "");
+    }
+
+    /**
+     * Makes a key that sorts after every issue whose numbers start with those of an issue text,
+     * so that "2024" as the end of a range includes "2024-12".
+     * @param issue The issue text of the end of the range.
+     * @return The upper bound key.
+     */
+    static IssueKey upperBound(String issue) {
+        IssueKey key = parse(issue);
+        int[] numbers = Arrays.copyOf(key.numbers, key.numbers.length + 1);
+        numbers[key.numbers.length] = Integer.MAX_VALUE;
+        return new IssueKey(numbers, "");
+    }
+
+    /**
+     * Reads a word as a month name.
+     * A month may be abbreviated to its first three letters or more.
+     * @param word A lower-case word of the issue text.
+     * @return The month number from 1 to 12, or -1 if the word is not a month.
+     */
+    private static int month(String word) {
+        if (word.length() < 3) {
+            return -1;
+        }
+        for (int m = 0; m < MONTHS.length; m++) {
+            if (MONTHS[m].startsWith(word)) {
+                return m + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Orders keys by their numbers, then by text.
+     * @param other The key to compare with.
+     * @return A negative number, zero, or a positive number as this key sorts before, with or after the other.
+     */
+    @Override
+    public int compareTo(IssueKey other) {
+        int length = Math.min(numbers.length, other.numbers.length);
+        for (int i = 0; i < length; i++) {
+            if (numbers[i] != other.numbers[i]) {
+                return Integer.compare(numbers[i], other.numbers[i]);
+            }
+        }
+        if (numbers.length != other.numbers.length) {
+            return Integer.compare(numbers.length, other.numbers.length);
+        }
+        return text.compareTo(other.text);
+    }
+
+    /**
+     * @param other The object to compare with.
+     * @return True if the other object is an IssueKey with the same numbers and text.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof IssueKey)) {
+            return false;
+        }
+        IssueKey key = (IssueKey) other;
+        return Arrays.equals(numbers, key.numbers) && text.equals(key.text);
+    }
+
+    /**
+     * @return The hash code of the key.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(numbers) + text.hashCode();
+    }
+}
+
+/**
+ * All issues of one magazine title, ordered by issue. The issues that have
+ * a copy in stock are also kept in a sorted set of their own, so available
+ * issues are found without looking at the ones that are out.
+ */
+class MagazineSeries {
+    final String title;
+    final TreeMap<IssueKey, LinkedHashSet<LibraryItemNode>> issues;
+    final TreeSet<IssueKey> availableIssues;
+
+    /**
+     * Constructor for MagazineSeries.
+     * @param title The title of the magazine as first added.
+     */
+    MagazineSeries(String title) {
+        this.title = title;
+        issues = new TreeMap<>();
+        availableIssues = new TreeSet<>();
+    }
+
+    /**
+     * Adds or drops an issue from the available set depending on the stock of its items.
+     * @param key The issue.
+     */
+    void updateAvailability(IssueKey key) {
+        LinkedHashSet<LibraryItemNode> nodes = issues.get(key);
+        boolean available = false;
+        if (nodes != null) {
+            for (LibraryItemNode node : nodes) {
+                if (node.libraryItem.getStock() > 0) {
+                    available = true;
+                    break;
+                }
+            }
+        }
+        if (available) {
+            availableIssues.add(key);
+        } else {
+            availableIssues.remove(key);
+        }
+    }
+}
+
+/**
+ * Index of magazines grouped into series by normalized title, with the issues
+ * of each series ordered by their parsed IssueKey. Finding a series costs
+ * O(log s) for s series, and the latest issue, a range of issues or the
+ * available issues of a series cost O(log i + k) for i issues and k results.
+ */
+class SeriesIndex {
+    private final TreeMap<String, MagazineSeries> series;
+
+    /**
+     * Constructor for SeriesIndex.
+     * Initializes the index as empty.
+     */
+    SeriesIndex() {
+        series = new TreeMap<>();
+    }
+
+    /**
+     * Adds a node to the series of its title, if its item is a magazine.
+     * @param node The LibraryItemNode to add.
+     */
+    void add(LibraryItemNode node) {
+        if (!(node.libraryItem instanceof Magazine)) {
+            return;
+        }
+        Magazine magazine = (Magazine) node.libraryItem;
+        String title = CatalogText.normalize(magazine.getTitle());
+        MagazineSeries magazines = series.get(title);
+        if (magazines == null) {
+            magazines = new MagazineSeries(magazine.getTitle());
+            series.put(title, magazines);
+        }
+        IssueKey key = IssueKey.parse(magazine.getIssue());
+        LinkedHashSet<LibraryItemNode> nodes = magazines.issues.get(key);
+        if (nodes == null) {
+            nodes = new LinkedHashSet<>();
+            magazines.issues.put(key, nodes);
+        }
+        nodes.add(node);
+        magazines.updateAvailability(key);
+    }
+
+    /**
+     * Removes a node from its series. The series is dropped once it has no issues left.
+     * @param node The LibraryItemNode to remove.
+     */
+    void remove(LibraryItemNode node) {
+        if (!(node.libraryItem instanceof Magazine)) {
+            return;
+        }
+        Magazine magazine = (Magazine) node.libraryItem;
+        String title = CatalogText.normalize(magazine.getTitle());
+        MagazineSeries magazines = series.get(title);
+        if (magazines == null) {
+            return;
+        }
+        IssueKey key = IssueKey.parse(magazine.getIssue());
+        LinkedHashSet<LibraryItemNode> nodes = magazines.issues.get(key);
+        if (nodes == null || !nodes.remove(node)) {
+            return;
+        }
+        if (nodes.isEmpty()) {
+            magazines.issues.remove(key);
+        }
+        magazines.updateAvailability(key);
+        if (magazines.issues.isEmpty()) {
+            series.remove(title);
+        }
+    }
+
+    /**
+     * Updates the available issues after the stock of a node has changed.
+     * @param node The LibraryItemNode whose stock changed.
+     */
+    void stockChanged(LibraryItemNode node) {
+        if (!(node.libraryItem instanceof Magazine)) {
+            return;
+        }
+        Magazine magazine = (Magazine) node.libraryItem;
+        MagazineSeries magazines = series.get(CatalogText.normalize(magazine.getTitle()));
+        if (magazines != null) {
+            magazines.updateAvailability(IssueKey.parse(magazine.getIssue()));
+        }
+    }
+
+    /**
+     * Checks whether there are magazines with a title.
+     * @param title The magazine title; case, accents and extra spaces are ignored.
+     * @return True if the series exists.
+     */
+    boolean hasSeries(String title) {
+        return series.containsKey(CatalogText.normalize(title));
+    }
+
+    /**
+     * Finds the latest issue of a series.
+     * @param title The magazine title.
+     * @return The nodes of the latest issue, or an empty list if there is no such series.
+     */
+    List<LibraryItemNode> latestIssue(String title) {
+        MagazineSeries magazines = series.get(CatalogText.normalize(title));
+        if (magazines == null || magazines.issues.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(magazines.issues.lastEntry().getValue());
+    }
+
+    /**
+     * Finds the issues of a series in a range, oldest first.
+     * @param title The magazine title.
+     * @param from The first issue of the range, or an empty string to start at the first issue.
+     *           Issues with the same numbers, such as "2024-05" for "May 2024", are included.
+     * @param to The last issue of the range, or an empty string to run to the latest issue.
+     *           Issues that extend it, such as "2024-12" for "2024", are included.
+     * @param availableOnly True to list only issues with a copy in stock.
+     * @param limit The maximum number of nodes to return.
+     * @return Up to limit matching nodes.
+     */
+    List<LibraryItemNode> findIssues(String title, String from, String to, boolean availableOnly, int limit) {
+        List<LibraryItemNode> result = new ArrayList<>();
+        MagazineSeries magazines = series.get(CatalogText.normalize(title));
+        if (magazines == null) {
+            return result;
+        }
+        boolean open = from.trim().isEmpty();
+        boolean unbounded = to.trim().isEmpty();
+        IssueKey low = open ? null : IssueKey.lowerBound(from);
+        IssueKey high = unbounded ? null : IssueKey.upperBound(to);
+        if (low != null && high != null && low.compareTo(high) > 0) {
+            return result;
+        }
+        if (availableOnly) {
+            NavigableSet<IssueKey> keys = magazines.availableIssues;
+            if (low != null) {
+                keys = keys.tailSet(low, true);
+            }
+            if (high != null) {
+                keys = keys.headSet(high, true);
+            }
+            for (IssueKey key : keys) {
+                for (LibraryItemNode node : magazines.issues.get(key)) {
+                    if (result.size() == limit) {
+                        return result;
+                    }
+                    if (node.libraryItem.getStock() > 0) {
+                        result.add(node);
+                    }
+                }
+            }
+            return result;
+        }
+        NavigableMap<IssueKey, LinkedHashSet<LibraryItemNode>> range = magazines.issues;
+        if (low != null) {
+            range = range.tailMap(low, true);
+        }
+        if (high != null) {
+            range = range.headMap(high, true);
+        }
+        for (LinkedHashSet<LibraryItemNode> nodes : range.values()) {
+            for (LibraryItemNode node : nodes) {
+                if (result.size() == limit) {
+                    return result;
+                }
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of magazine series in the index.
+     */
+    int seriesCount() {
+        return series.size();
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sort key of a catalog item: the normalized title, with the catalog id
+ * breaking ties between items that share a title.
+ */
+class TitleKey implements Comparable<TitleKey> {
+    final String title;
+    final int id;
+
+    /**
+     * Constructor for TitleKey.
+     * @param title The normalized title.
+     * @param id The catalog id of the item.
+     */
+    TitleKey(String title, int id) {
+        this.title = title;
+        this.id = id;
+    }
+
+    /**
+     * Orders keys by title, then by id.
+     * @param other The key to compare with.
+     * @return A negative number, zero, or a positive number as this key sorts before, with or after the other.
+     */
+    @Override
+    public int compareTo(TitleKey other) {
+        int result = title.compareTo(other.title);
+        return result != 0 ? result : Integer.compare(id, other.id);
+    }
+
+    /**
+     * @param other The object to compare with.
+     * @return True if the other object is a TitleKey with the same title and id.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof TitleKey)) {
+            return false;
+        }
+        TitleKey key = (TitleKey) other;
+        return id == key.id && title.equals(key.title);
+    }
+
+    /**
+     * @return The hash code of the key.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * title.hashCode() + id;
+    }
+}
+
+/**
+ * One page of a title listing.
+ */
+class TitlePage {
+    List<LibraryItemNode> items;
+    TitleKey nextCursor;
+
+    /**
+     * Constructor for TitlePage.
+     * @param items The items on the page, in title order.
+     * @param nextCursor The cursor to pass to get the next page, or null if this is the last page.
+     */
+    TitlePage(List<LibraryItemNode> items, TitleKey nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+}
+
+/**
+ * Ordered index of catalog items by normalized title, backed by a concurrent skip list.
+ * Range scans and pages cost O(log n + page size); only the requested page is
+ * ever copied out of the index.
+ */
+class SortedTitleIndex {
+    private final ConcurrentSkipListMap<TitleKey, LibraryItemNode> items;
+
+    /**
+     * Constructor for SortedTitleIndex.
+     * Initializes the index as empty.
+     */
+    SortedTitleIndex() {
+        items = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * @param node A catalog node.
+     * @return The sort key of the node.
+     */
+    private static TitleKey keyOf(LibraryItemNode node) {
+        return new TitleKey(CatalogText.normalize(node.libraryItem.getTitle()), node.libraryItem.getId());
+    }
+
+    /**
+     * Adds a node to the index.
+     * @param node The LibraryItemNode to add.
+     */
+    void add(LibraryItemNode node) {
+        items.put(keyOf(node), node);
+    }
+
+    /**
+     * Removes a node from the index.
+     * @param node The LibraryItemNode to remove.
+     */
+    void remove(LibraryItemNode node) {
+        items.remove(keyOf(node));
+    }
+
+    /**
+     * Returns one page of the items whose title lies in a range.
+     * @param from The first title of the range, or an empty string to start at the beginning.
+     * @param to The last title of the range; titles that start with it are included.
+     *           An empty string runs to the end.
+     * @param after The cursor of the previous page, or null for the first page.
+     * @param pageSize The maximum number of items on the page.
+     * @return The page, with the cursor of the next page if there are more items in the range.
+     *         The page is empty if from sorts after to.
+     */
+    TitlePage page(String from, String to, TitleKey after, int pageSize) {
+        TitleKey low = new TitleKey(CatalogText.normalize(from), Integer.MIN_VALUE);
+        boolean resume = after != null && after.compareTo(low) >= 0;
+        String end = CatalogText.normalize(to);
+        TitleKey high = end.isEmpty() ? null : new TitleKey(end + Character.MAX_VALUE, Integer.MAX_VALUE);
+        if (high != null && (resume ? after : low).compareTo(high) > 0) {
+            return new TitlePage(new ArrayList<LibraryItemNode>(), null);
+        }
+        ConcurrentNavigableMap<TitleKey, LibraryItemNode> range = resume
+                ? items.tailMap(after, false)
+                : items.tailMap(low, true);
+        if (high != null) {
+            range = range.headMap(high, true);
+        }
+
+        List<LibraryItemNode> page = new ArrayList<>(Math.min(pageSize, 64));
+        TitleKey last = null;
+        for (Map.Entry<TitleKey, LibraryItemNode> entry : range.entrySet()) {
+            if (page.size() == pageSize) {
+                return new TitlePage(page, last);
+            }
+            page.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new TitlePage(page, null);
+    }
+}
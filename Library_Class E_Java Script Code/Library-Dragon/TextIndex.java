@@ -0,0 +1,505 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Postings list of one term: the ids of the items containing the term, with
+ * the weighted term frequency of each.
+ *
+ * Postings are stored in ascending id order as variable-length deltas in a
+ * byte array. Every SKIP_INTERVAL postings a skip entry records the byte
+ * offset of the posting and the id before it, so a cursor can jump ahead
+ * without decoding the whole list.
+ */
+class PostingList {
+    static final int SKIP_INTERVAL = 128;
+
+    byte[] data;
+    int length;
+    int count;
+    int liveCount;
+    int lastId;
+    int[] skipIds;
+    int[] skipOffsets;
+    int skipCount;
+
+    /**
+     * Constructor for PostingList.
+     * Initializes the list as empty.
+     */
+    PostingList() {
+        data = new byte[8];
+        length = 0;
+        count = 0;
+        liveCount = 0;
+        lastId = -1;
+        skipIds = null;
+        skipOffsets = null;
+        skipCount = 0;
+    }
+
+    /**
+     * Appends a posting. Ids must be added in ascending order.
+     * @param id The item id.
+     * @param frequency The weighted term frequency in the item.
+     */
+    void add(int id, int frequency) {
+        if (count % SKIP_INTERVAL == 0 && count > 0) {
+            if (skipIds == null) {
+                skipIds = new int[4];
+                skipOffsets = new int[4];
+            } else if (skipCount == skipIds.length) {
+                skipIds = Arrays.copyOf(skipIds, skipCount * 2);
+                skipOffsets = Arrays.copyOf(skipOffsets, skipCount * 2);
+            }
+            skipIds[skipCount] = lastId;
+            skipOffsets[skipCount] = length;
+            skipCount++;
+        }
+        writeVarInt(id - lastId);
+        writeVarInt(frequency);
+        lastId = id;
+        count++;
+        liveCount++;
+    }
+
+    /**
+     * Writes a non-negative int as a little-endian base-128 varint.
+     * @param value The value to write.
+     */
+    private void writeVarInt(int value) {
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+        }
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    /**
+     * Rewrites the list without the postings of deleted items.
+     * @param deleted The ids of deleted items.
+     */
+    void compact(BitSet deleted) {
+        PostingList compacted = new PostingList();
+        PostingCursor cursor = new PostingCursor(this, deleted);
+        while (cursor.next()) {
+            compacted.add(cursor.id, cursor.frequency);
+        }
+        data = compacted.data;
+        length = compacted.length;
+        count = compacted.count;
+        liveCount = compacted.liveCount;
+        lastId = compacted.lastId;
+        skipIds = compacted.skipIds;
+        skipOffsets = compacted.skipOffsets;
+        skipCount = compacted.skipCount;
+    }
+}
+
+/**
+ * Forward-only cursor over a PostingList that skips deleted items.
+ */
+class PostingCursor {
+    PostingList list;
+    BitSet deleted;
+    int offset;
+    int index;
+    int id;
+    int frequency;
+    double weight;
+
+    /**
+     * Constructor for PostingCursor.
+     * The cursor starts before the first posting.
+     * @param list The PostingList to read.
+     * @param deleted The ids of deleted items, which are skipped.
+     */
+    PostingCursor(PostingList list, BitSet deleted) {
+        this.list = list;
+        this.deleted = deleted;
+        offset = 0;
+        index = 0;
+        id = -1;
+        frequency = 0;
+    }
+
+    /**
+     * Moves to the next live posting.
+     * @return True if there is one, false at the end of the list.
+     */
+    boolean next() {
+        while (index < list.count) {
+            id += readVarInt();
+            frequency = readVarInt();
+            index++;
+            if (!deleted.get(id)) {
+                return true;
+            }
+        }
+        id = Integer.MAX_VALUE;
+        return false;
+    }
+
+    /**
+     * Moves to the first live posting with an id of at least target,
+     * jumping over whole blocks with the skip entries where possible.
+     * @param target The id to advance to.
+     * @return True if there is such a posting, false at the end of the list.
+     */
+    boolean advance(int target) {
+        if (id >= target) {
+            return id != Integer.MAX_VALUE;
+        }
+        PostingList postings = list;
+        int low = 0;
+        int high = postings.skipCount - 1;
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (postings.skipIds[mid] < target) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block >= 0 && (block + 1) * PostingList.SKIP_INTERVAL > index) {
+            offset = postings.skipOffsets[block];
+            index = (block + 1) * PostingList.SKIP_INTERVAL;
+            id = postings.skipIds[block];
+        }
+        while (next()) {
+            if (id >= target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a base-128 varint at the current offset.
+     * @return The decoded value.
+     */
+    private int readVarInt() {
+        byte[] data = list.data;
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[offset++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
+
+/**
+ * In-memory inverted index over the title, author, publisher and issue of catalog items.
+ *
+ * Every term maps to a compressed PostingList keyed by item id. Since the catalog
+ * hands out ids in increasing order, adding an item only appends to the end of
+ * its terms' lists. Removed items are recorded in a bitset and skipped by queries;
+ * a list is rewritten once more than half of its postings belong to removed items.
+ *
+ * Queries match all terms (AND) or any term (OR) and rank the matches by TF-IDF,
+ * where title terms weigh more than author terms, which weigh more than the rest.
+ */
+class TextIndex {
+    private static final int TITLE_WEIGHT = 3;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int DETAIL_WEIGHT = 1;
+
+    private final HashMap<String, PostingList> terms;
+    private final BitSet deleted;
+    private int liveItems;
+
+    /**
+     * Constructor for TextIndex.
+     * Initializes the index as empty.
+     */
+    TextIndex() {
+        terms = new HashMap<>();
+        deleted = new BitSet();
+        liveItems = 0;
+    }
+
+    /**
+     * Splits normalized text into terms made of letters and digits.
+     * @param text The text to tokenize.
+     * @return The terms, in order of appearance.
+     */
+    static List<String> tokenize(String text) {
+        String normalized = CatalogText.normalize(text);
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Collects the weighted frequency of every term of an item.
+     * @param item The LibraryItem to analyze.
+     * @return The weighted frequency of each distinct term, in order of first appearance.
+     */
+    private static Map<String, Integer> termFrequencies(LibraryItem item) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        addTerms(frequencies, item.getTitle(), TITLE_WEIGHT);
+        addTerms(frequencies, item.getAuthor(), AUTHOR_WEIGHT);
+        if (item instanceof Book) {
+            addTerms(frequencies, ((Book) item).getPublisher(), DETAIL_WEIGHT);
+        } else if (item instanceof Magazine) {
+            addTerms(frequencies, ((Magazine) item).getIssue(), DETAIL_WEIGHT);
+        }
+        return frequencies;
+    }
+
+    /**
+     * Adds the terms of one field to a frequency map.
+     * @param frequencies The map to add to.
+     * @param text The field text.
+     * @param weight The weight of one occurrence in this field.
+     */
+    private static void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        for (String term : tokenize(text)) {
+            Integer current = frequencies.get(term);
+            frequencies.put(term, current == null ? weight : current + weight);
+        }
+    }
+
+    /**
+     * Indexes an item. Its id must be higher than that of any item indexed before.
+     * @param item The LibraryItem to index.
+     */
+    void add(LibraryItem item) {
+        for (Map.Entry<String, Integer> entry : termFrequencies(item).entrySet()) {
+            PostingList postings = terms.get(entry.getKey());
+            if (postings == null) {
+                postings = new PostingList();
+                terms.put(entry.getKey(), postings);
+            }
+            postings.add(item.getId(), entry.getValue());
+        }
+        liveItems++;
+    }
+
+    /**
+     * Removes an item from the index.
+     * @param item The LibraryItem to remove.
+     */
+    void remove(LibraryItem item) {
+        int id = item.getId();
+        if (id < 0 || deleted.get(id)) {
+            return;
+        }
+        deleted.set(id);
+        liveItems--;
+        for (String term : termFrequencies(item).keySet()) {
+            PostingList postings = terms.get(term);
+            if (postings == null) {
+                continue;
+            }
+            postings.liveCount--;
+            if (postings.liveCount == 0) {
+                terms.remove(term);
+            } else if (postings.count - postings.liveCount > postings.liveCount) {
+                postings.compact(deleted);
+            }
+        }
+    }
+
+    /**
+     * Searches the index.
+     * Terms are matched all together, unless the query contains the word OR
+     * in capitals, in which case items matching any of the terms are returned.
+     * @param query The keywords to search for.
+     * @param limit The maximum number of results.
+     * @return The ids of the best matching items, best match first.
+     */
+    int[] search(String query, int limit) {
+        boolean matchAny = false;
+        List<String> queryTerms = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.equals("OR")) {
+                matchAny = true;
+            } else {
+                for (String term : tokenize(word)) {
+                    if (!queryTerms.contains(term)) {
+                        queryTerms.add(term);
+                    }
+                }
+            }
+        }
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+
+        List<PostingCursor> cursors = new ArrayList<>();
+        for (String term : queryTerms) {
+            PostingList postings = terms.get(term);
+            if (postings == null) {
+                if (!matchAny) {
+                    return new int[0];
+                }
+                continue;
+            }
+            PostingCursor cursor = new PostingCursor(postings, deleted);
+            cursor.weight = Math.log(1.0 + (double) liveItems / postings.liveCount);
+            cursors.add(cursor);
+        }
+        if (cursors.isEmpty()) {
+            return new int[0];
+        }
+
+        PriorityQueue<double[]> best = new PriorityQueue<>(limit + 1, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] a, double[] b) {
+                return a[1] != b[1] ? Double.compare(a[1], b[1]) : Double.compare(b[0], a[0]);
+            }
+        });
+        if (matchAny) {
+            searchAny(cursors, best, limit);
+        } else {
+            searchAll(cursors, best, limit);
+        }
+
+        int[] ids = new int[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = (int) best.poll()[0];
+        }
+        return ids;
+    }
+
+    /**
+     * Finds the items that contain every term. The rarest term drives the
+     * search and the other cursors advance to each of its ids.
+     * @param cursors One cursor per query term.
+     * @param best The heap of the best matches found so far.
+     * @param limit The maximum number of results.
+     */
+    private void searchAll(List<PostingCursor> cursors, PriorityQueue<double[]> best, int limit) {
+        cursors.sort(new Comparator<PostingCursor>() {
+            @Override
+            public int compare(PostingCursor a, PostingCursor b) {
+                return Integer.compare(a.list.liveCount, b.list.liveCount);
+            }
+        });
+        PostingCursor lead = cursors.get(0);
+        int target = 0;
+        while (lead.advance(target)) {
+            int candidate = lead.id;
+            boolean matched = true;
+            for (int i = 1; i < cursors.size(); i++) {
+                PostingCursor cursor = cursors.get(i);
+                if (!cursor.advance(candidate)) {
+                    return;
+                }
+                if (cursor.id != candidate) {
+                    target = cursor.id;
+                    matched = false;
+                    break;
+                }
+            }
+            if (matched) {
+                offer(best, candidate, score(cursors, candidate), limit);
+                target = candidate + 1;
+            }
+        }
+    }
+
+    /**
+     * Finds the items that contain at least one term by merging the cursors in id order.
+     * @param cursors One cursor per query term.
+     * @param best The heap of the best matches found so far.
+     * @param limit The maximum number of results.
+     */
+    private void searchAny(List<PostingCursor> cursors, PriorityQueue<double[]> best, int limit) {
+        PriorityQueue<PostingCursor> merge = new PriorityQueue<>(cursors.size(), new Comparator<PostingCursor>() {
+            @Override
+            public int compare(PostingCursor a, PostingCursor b) {
+                return Integer.compare(a.id, b.id);
+            }
+        });
+        for (PostingCursor cursor : cursors) {
+            if (cursor.next()) {
+                merge.add(cursor);
+            }
+        }
+        while (!merge.isEmpty()) {
+            int candidate = merge.peek().id;
+            double score = 0;
+            while (!merge.isEmpty() && merge.peek().id == candidate) {
+                PostingCursor cursor = merge.poll();
+                score += termScore(cursor);
+                if (cursor.next()) {
+                    merge.add(cursor);
+                }
+            }
+            offer(best, candidate, score, limit);
+        }
+    }
+
+    /**
+     * Sums the TF-IDF score of every cursor positioned on an item.
+     * @param cursors The query cursors.
+     * @param id The item id.
+     * @return The score of the item.
+     */
+    private static double score(List<PostingCursor> cursors, int id) {
+        double score = 0;
+        for (PostingCursor cursor : cursors) {
+            if (cursor.id == id) {
+                score += termScore(cursor);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @param cursor A cursor positioned on a posting.
+     * @return The TF-IDF score of the posting.
+     */
+    private static double termScore(PostingCursor cursor) {
+        return (1.0 + Math.log(cursor.frequency)) * cursor.weight;
+    }
+
+    /**
+     * Offers a match to the bounded heap of best matches. Ties keep the lower id.
+     * @param best The heap of the best matches, worst on top.
+     * @param id The item id.
+     * @param score The score of the item.
+     * @param limit The maximum size of the heap.
+     */
+    private static void offer(PriorityQueue<double[]> best, int id, double score, int limit) {
+        if (best.size() < limit) {
+            best.add(new double[] {id, score});
+        } else if (score > best.peek()[1]) {
+            best.poll();
+            best.add(new double[] {id, score});
+        }
+    }
+
+    /**
+     * @return The number of distinct terms in the index.
+     */
+    int termCount() {
+        return terms.size();
+    }
+}
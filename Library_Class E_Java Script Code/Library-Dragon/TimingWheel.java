@@ -0,0 +1,334 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Node that can be scheduled on a TimingWheel.
+ * The links are intrusive, so scheduling, cancelling and expiring a node
+ * allocate nothing, and bucket tells the wheel which list the node is in.
+ */
+class TimedNode {
+    long deadline;
+    TimedNode nextTimed;
+    TimedNode prevTimed;
+    int bucket;
+
+    /**
+     * Constructor for TimedNode.
+     * Initializes the node as not scheduled.
+     */
+    TimedNode() {
+        deadline = 0;
+        nextTimed = null;
+        prevTimed = null;
+        bucket = TimingWheel.UNSCHEDULED;
+    }
+
+    /**
+     * @return True if the node is waiting on a wheel or sits in its expired list.
+     */
+    boolean isScheduled() {
+        return bucket != TimingWheel.UNSCHEDULED;
+    }
+}
+
+/**
+ * Hierarchical timing wheel that moves nodes to an expired list once their
+ * deadline has passed.
+ *
+ * Time is counted in ticks of a fixed number of milliseconds. The wheel has
+ * LEVELS levels of SLOTS slots each: level 0 holds the nodes due within the
+ * next SLOTS ticks, one slot per tick, and every higher level covers SLOTS
+ * times the span of the level below. When the clock reaches the start of a
+ * higher-level slot, its nodes are cascaded down to the levels below, so each
+ * node is moved at most LEVELS times before it expires. Scheduling and
+ * cancelling are O(1), advancing the clock costs O(1) amortized per expired
+ * node plus the slots passed, and a bitmap per level lets the clock skip
+ * empty slots. Expired nodes stay in the expired list, oldest first, until
+ * they are cancelled, so listing them costs O(expired) however many nodes
+ * are still waiting.
+ *
+ * @param <T> The type of the scheduled nodes.
+ */
+class TimingWheel<T extends TimedNode> {
+    static final int UNSCHEDULED = -1;
+    private static final int EXPIRED = -2;
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final long tickMillis;
+    private final TimedNode[] slots;
+    private final long[] occupied;
+    private final TimedNode expired;
+    private long currentTick;
+    private int waiting;
+    private int expiredCount;
+
+    /**
+     * Constructor for TimingWheel.
+     * With one-minute ticks the wheel covers 64^4 minutes, about 32 years,
+     * before nodes have to be cascaded through the top level more than once.
+     * @param tickMillis The length of a tick in milliseconds.
+     * @param startMillis The time the wheel starts at, in epoch milliseconds.
+     */
+    TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick length must be positive");
+        }
+        this.tickMillis = tickMillis;
+        slots = new TimedNode[LEVELS * SLOTS];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = sentinel();
+        }
+        occupied = new long[LEVELS];
+        expired = sentinel();
+        currentTick = Math.floorDiv(startMillis, tickMillis);
+        waiting = 0;
+        expiredCount = 0;
+    }
+
+    /**
+     * @return An empty circular list head.
+     */
+    private static TimedNode sentinel() {
+        TimedNode head = new TimedNode();
+        head.nextTimed = head;
+        head.prevTimed = head;
+        return head;
+    }
+
+    /**
+     * Schedules a node, or moves it to a new deadline if it is already scheduled.
+     * A node whose deadline has already passed goes straight to the expired list.
+     * @param node The node to schedule.
+     * @param deadline The time the node expires, in epoch milliseconds.
+     */
+    void schedule(T node, long deadline) {
+        cancel(node);
+        node.deadline = deadline;
+        place(node);
+    }
+
+    /**
+     * Removes a node from the wheel or from the expired list.
+     * @param node The node to remove.
+     * @return True if the node was scheduled.
+     */
+    boolean cancel(T node) {
+        int bucket = node.bucket;
+        if (bucket == UNSCHEDULED) {
+            return false;
+        }
+        unlink(node);
+        if (bucket == EXPIRED) {
+            expiredCount--;
+        } else {
+            waiting--;
+            if (slots[bucket].nextTimed == slots[bucket]) {
+                occupied[bucket >> SLOT_BITS] &= ~(1L << (bucket & SLOT_MASK));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the clock forward and expires every node whose deadline is at or before the new time.
+     * The new time is rounded down to a tick, so a node expires within one tick after its deadline.
+     * Moving the clock backwards does nothing.
+     * @param nowMillis The current time, in epoch milliseconds.
+     * @return The number of nodes that expired.
+     */
+    int advance(long nowMillis) {
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        int before = expiredCount;
+        while (currentTick < target) {
+            int lowest = lowestOccupiedLevel();
+            if (lowest < 0) {
+                currentTick = target;
+                break;
+            }
+            if (lowest > 0) {
+                // Nothing can happen before the next slot of the lowest occupied level begins.
+                long span = 1L << (SLOT_BITS * lowest);
+                long skipTo = (currentTick | (span - 1));
+                if (skipTo >= target) {
+                    currentTick = target;
+                    break;
+                }
+                currentTick = skipTo;
+            }
+            currentTick++;
+            cascade();
+            expireSlot(slots[(int) (currentTick & SLOT_MASK)]);
+            occupied[0] &= ~(1L << (currentTick & SLOT_MASK));
+        }
+        return expiredCount - before;
+    }
+
+    /**
+     * Lists the expired nodes that have not been cancelled, in the order they expired.
+     * @return The expired nodes.
+     */
+    @SuppressWarnings("unchecked")
+    List<T> expired() {
+        List<T> result = new ArrayList<>(expiredCount);
+        for (TimedNode node = expired.nextTimed; node != expired; node = node.nextTimed) {
+            result.add((T) node);
+        }
+        return result;
+    }
+
+    /**
+     * Removes the node that expired first from the expired list.
+     * @return The node, or null if no node has expired.
+     */
+    @SuppressWarnings("unchecked")
+    T pollExpired() {
+        if (expired.nextTimed == expired) {
+            return null;
+        }
+        T node = (T) expired.nextTimed;
+        cancel(node);
+        return node;
+    }
+
+    /**
+     * @return The number of nodes in the expired list.
+     */
+    int expiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * @return The number of nodes still waiting for their deadline.
+     */
+    int waitingCount() {
+        return waiting;
+    }
+
+    /**
+     * @return The time the wheel has advanced to, in epoch milliseconds, rounded down to a tick.
+     */
+    long currentMillis() {
+        return currentTick * tickMillis;
+    }
+
+    /**
+     * Puts a node into the slot for its deadline, or into the expired list if it is due.
+     * Deadlines beyond the span of the wheel go into the farthest slot of the top level
+     * and are placed again when that slot is cascaded.
+     * @param node The node to place.
+     */
+    private void place(TimedNode node) {
+        long due = ceilDiv(node.deadline, tickMillis);
+        if (due <= currentTick) {
+            link(expired, node);
+            node.bucket = EXPIRED;
+            expiredCount++;
+            return;
+        }
+        long delta = due - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        if (level == LEVELS - 1 && delta >= (1L << (SLOT_BITS * LEVELS))) {
+            due = currentTick + (1L << (SLOT_BITS * LEVELS)) - 1;
+        }
+        int slot = (int) ((due >>> (SLOT_BITS * level)) & SLOT_MASK);
+        int bucket = (level << SLOT_BITS) | slot;
+        link(slots[bucket], node);
+        node.bucket = bucket;
+        occupied[level] |= 1L << slot;
+        waiting++;
+    }
+
+    /**
+     * Cascades the higher-level slots that begin at the current tick, highest level first,
+     * so that their nodes land in the slots of the levels below before those are expired.
+     */
+    private void cascade() {
+        int top = 0;
+        while (top < LEVELS - 1 && (currentTick & ((1L << (SLOT_BITS * (top + 1))) - 1)) == 0) {
+            top++;
+        }
+        for (int level = top; level > 0; level--) {
+            int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            TimedNode head = slots[(level << SLOT_BITS) | slot];
+            occupied[level] &= ~(1L << slot);
+            TimedNode node = head.nextTimed;
+            head.nextTimed = head;
+            head.prevTimed = head;
+            while (node != head) {
+                TimedNode next = node.nextTimed;
+                waiting--;
+                place(node);
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Moves every node of a level-0 slot to the end of the expired list.
+     * @param head The head of the slot.
+     */
+    private void expireSlot(TimedNode head) {
+        TimedNode node = head.nextTimed;
+        head.nextTimed = head;
+        head.prevTimed = head;
+        while (node != head) {
+            TimedNode next = node.nextTimed;
+            link(expired, node);
+            node.bucket = EXPIRED;
+            waiting--;
+            expiredCount++;
+            node = next;
+        }
+    }
+
+    /**
+     * @return The lowest level with a node in it, or -1 if no node is waiting.
+     */
+    private int lowestOccupiedLevel() {
+        for (int level = 0; level < LEVELS; level++) {
+            if (occupied[level] != 0) {
+                return level;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Links a node at the end of a list.
+     * @param head The head of the list.
+     * @param node The node to link.
+     */
+    private static void link(TimedNode head, TimedNode node) {
+        node.prevTimed = head.prevTimed;
+        node.nextTimed = head;
+        head.prevTimed.nextTimed = node;
+        head.prevTimed = node;
+    }
+
+    /**
+     * Unlinks a node from its list and marks it as not scheduled.
+     * @param node The node to unlink.
+     */
+    private static void unlink(TimedNode node) {
+        node.prevTimed.nextTimed = node.nextTimed;
+        node.nextTimed.prevTimed = node.prevTimed;
+        node.nextTimed = null;
+        node.prevTimed = null;
+        node.bucket = UNSCHEDULED;
+    }
+
+    /**
+     * @param a The dividend.
+     * @param b The divisor; must be positive.
+     * @return a / b rounded up.
+     */
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+}
@@ -3,7 +3,7 @@
  */
 class TransactionNode {
     Displayable item;
-    Borrower borrower;
+    int borrowerId;
     String borrowDate;
     String returnDate;
     TransactionNode prev;
@@ -12,13 +12,13 @@ class TransactionNode {
     /**
      * Constructor for TransactionNode.
      * @param item The item involved in the transaction (can be LibraryItem or Borrower for display).
-     * @param borrower The borrower involved in the transaction.
+     * @param borrowerId The id of the borrower involved in the transaction.
      * @param borrowDate The date the item was borrowed.
      * @param returnDate The date the item was returned (can be empty if not returned yet).
      */
-    TransactionNode(Displayable item, Borrower borrower, String borrowDate, String returnDate) {
+    TransactionNode(Displayable item, int borrowerId, String borrowDate, String returnDate) {
         this.item = item;
-        this.borrower = borrower;
+        this.borrowerId = borrowerId;
         this.borrowDate = borrowDate;
         this.returnDate = returnDate;
         prev = null;
@@ -28,17 +28,20 @@ class TransactionNode {
 
 /**
  * Represents a list of library transactions using a doubly circular linked list. 
- * Each transaction records the item, borrower, borrow date, and return date.
+ * Each transaction records the item, borrower id, borrow date, and return date.
  */
 class TransactionList {
     private TransactionNode head;
     private TransactionNode tail;
+    private final BorrowerList borrowerList;
 
     /**
      * Constructor for TransactionList.
      * Initializes the list as empty.
+     * @param borrowerList The BorrowerList used to show the borrowers of transactions.
      */
-    TransactionList() {
+    TransactionList(BorrowerList borrowerList) {
+        this.borrowerList = borrowerList;
         head = null;
         tail = null;
     }
@@ -57,7 +60,7 @@ class TransactionList {
             return;
         }
     
-        TransactionNode newNode = new TransactionNode(item, borrower, borrowDate, returnDate);
+        TransactionNode newNode = new TransactionNode(item, borrower.getId(), borrowDate, returnDate);
         if (head == null) { // If the list is empty
             head = newNode;
             tail = newNode;
@@ -115,7 +118,12 @@ class TransactionList {
         do {
             System.out.println("Transaction " + (++transactionCount) + ":");
             System.out.println("Title: " + current.item.getTitle());
-            current.borrower.displayInfo();
+            Borrower borrower = borrowerList.findBorrower(current.borrowerId);
+            if (borrower != null) {
+                borrower.displayInfo();
+            } else {
+                System.out.println("Name: " + borrowerList.getBorrowerName(current.borrowerId));
+            }
             System.out.print("Borrow Date: " + current.borrowDate);
             if (current.returnDate.isEmpty()) {
                 System.out.println(", Return Date: Not Returned Yet");
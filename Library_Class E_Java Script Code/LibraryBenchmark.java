@@ -0,0 +1,1260 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks for the library data structures.
+ * Prints the average latency per operation so the numbers can be compared
+ * across catalog sizes. Run with: java LibraryBenchmark [catalogSize ...]
+ */
+public class LibraryBenchmark {
+    private static final int OPERATIONS = 1_000_000;
+    private static final int REMOVALS = 10_000;
+    private static final int TERMINALS = 64;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int WAITERS = 1_000_000;
+    private static final int WAITLIST_TITLES = 100_000;
+    private static final int EXPIRING_HOLDS = 100_000;
+    private static final int MASS_RETURNS = 20_000;
+
+    /**
+     * Runs the benchmarks for each catalog size given on the command line,
+     * or for a default set of sizes.
+     * @param args Catalog sizes to benchmark.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {1_000, 10_000, 100_000, 1_000_000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("Title lookup (ns/op)");
+        System.out.printf("%12s %12s %12s %12s %12s%n", "items", "findItem", "claimCopy", "returnCopy", "removeItem");
+        for (int size : sizes) {
+            benchmarkTitleLookup(size);
+        }
+
+        System.out.println();
+        System.out.println("Lookup of titles not in the catalog (ns/op)");
+        System.out.printf("%12s %12s %12s %12s%n", "items", "filtered", "index only", "false pos %");
+        for (int size : sizes) {
+            benchmarkMissingTitles(size);
+        }
+
+        System.out.println();
+        System.out.println("Author search (us/query)");
+        System.out.printf("%12s %12s %12s%n", "items", "exact", "prefix");
+        for (int size : sizes) {
+            benchmarkAuthorSearch(size);
+        }
+
+        System.out.println();
+        System.out.println("Sorted listing, 50 per page (us/page)");
+        System.out.printf("%12s %12s %12s%n", "items", "first page", "next page");
+        for (int size : sizes) {
+            benchmarkSortedListing(size);
+        }
+
+        System.out.println();
+        System.out.println("Magazine series with 600 issues each (us/query)");
+        System.out.printf("%12s %12s %12s %12s%n", "items", "latest", "range of 12", "available");
+        for (int size : sizes) {
+            benchmarkMagazineSeries(size);
+        }
+
+        System.out.println();
+        System.out.println("Keyword search, top 50 (us/query)");
+        System.out.printf("%12s %12s %12s%n", "items", "AND", "OR");
+        for (int size : sizes) {
+            benchmarkKeywordSearch(size);
+        }
+
+        System.out.println();
+        System.out.println("Catalog heap usage (bytes/item) and lookup (ns/op)");
+        System.out.printf("%12s %12s %12s %12s %12s %12s%n", "items", "list heap", "column heap", "list find", "column find", "column claim");
+        for (int size : sizes) {
+            benchmarkColumnarCatalog(size);
+        }
+
+        System.out.println();
+        System.out.println("Mapped catalog heap usage (bytes/item) and operations (ns/op)");
+        System.out.printf("%12s %12s %12s %12s %12s%n", "items", "heap", "findItem", "claim", "reopen ms");
+        for (int size : sizes) {
+            benchmarkMappedCatalog(size);
+        }
+
+        System.out.println();
+        System.out.println("Borrower list (ns/op)");
+        System.out.printf("%12s %12s %12s%n", "borrowers", "find", "remove+add");
+        for (int size : sizes) {
+            benchmarkBorrowerList(size);
+        }
+
+        System.out.println();
+        System.out.println("Loan returns by borrower and title (ns/op, 10 loans per title)");
+        System.out.printf("%12s %12s %12s%n", "loans", "return+lend", "list title");
+        for (int size : sizes) {
+            benchmarkLoanReturns(size);
+        }
+
+        System.out.println();
+        System.out.println("Overdue loans, due over 28 days (ns per loan expired, us per query with 1% overdue)");
+        System.out.printf("%12s %12s %12s %12s%n", "loans", "expire", "overdue now", "full scan");
+        for (int size : sizes) {
+            benchmarkOverdueLoans(size);
+        }
+
+        System.out.println();
+        System.out.println("Waitlists with " + WAITERS + " borrowers over " + WAITLIST_TITLES
+                + " titles, 10% faculty and 5% accessibility holds (ns/op)");
+        System.out.printf("%12s %12s %12s %12s%n", "enqueue", "next waiter", "cancel", "size");
+        benchmarkWaitlists();
+
+        System.out.println();
+        System.out.println("Concurrent waitlist with " + WAITERS + " holds over " + WAITLIST_TITLES
+                + " titles (" + Runtime.getRuntime().availableProcessors() + " processors)");
+        System.out.printf("%12s %12s %12s %12s %12s%n", "threads", "enqueue/s", "ns/enqueue", "ns/dequeue", "misserved");
+        for (int threads = 1; threads <= TERMINALS; threads *= 2) {
+            benchmarkConcurrentWaitlist(threads);
+        }
+
+        System.out.println();
+        System.out.println("Hold expiry with " + WAITERS + " holds, " + EXPIRING_HOLDS + " of them due in an hour");
+        System.out.printf("%12s %12s %12s %12s%n", "batch", "expired", "ms/batch", "ns/hold");
+        benchmarkHoldExpiry();
+
+        System.out.println();
+        System.out.println("Mass return of " + MASS_RETURNS + " copies of " + MASS_RETURNS / 10
+                + " titles, 5 holds on every other title");
+        System.out.printf("%12s %12s %12s %12s %12s%n", "dispatch", "lent", "shelved", "ns/return", "returns/s");
+        benchmarkMassReturns(false);
+        benchmarkMassReturns(true);
+
+        System.out.println();
+        System.out.println("Returns inbox, " + OPERATIONS + " returns drained in batches of 256 (ns/item)");
+        System.out.printf("%12s %12s %12s %12s %12s%n", "policy", "capacity", "push", "drain", "spilled");
+        benchmarkReturnsInbox(OverflowPolicy.REJECT, OPERATIONS);
+        benchmarkReturnsInbox(OverflowPolicy.REJECT, 1024);
+        benchmarkReturnsInbox(OverflowPolicy.BLOCK, 1024);
+        benchmarkReturnsInbox(OverflowPolicy.SPILL, 1024);
+
+        System.out.println();
+        System.out.println("Reshelving plan, carts of 50 (ms/batch)");
+        System.out.printf("%12s %12s %12s %12s%n", "returns", "radix", "sort", "carts");
+        benchmarkReshelving(10_000);
+        benchmarkReshelving(100_000);
+        benchmarkReshelving(1_000_000);
+
+        System.out.println();
+        System.out.println("Concurrent borrowing of one title by " + TERMINALS + " threads");
+        System.out.printf("%12s %12s %12s %12s%n", "stock", "borrowed", "final stock", "ns/attempt");
+        benchmarkConcurrentReservation(1_000);
+        benchmarkConcurrentReservation(1_000_000);
+    }
+
+    /**
+     * Measures findItem, borrowing and returning a copy of a title with
+     * claimCopy and returnCopy, and removeItem on a catalog of the given size.
+     * @param size The number of items in the catalog.
+     */
+    private static void benchmarkTitleLookup(int size) {
+        LibraryItemList itemList = new LibraryItemList();
+        // Enough copies that random claims rarely run a title out of stock.
+        int stock = 2 * OPERATIONS / size + 16;
+        for (int i = 0; i < size; i++) {
+            itemList.addItem(new Book("Title " + i, "Author " + (i % 1000), stock, "Publisher " + (i % 100)));
+        }
+
+        Random random = new Random(42);
+        String[] titles = new String[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            titles[i] = "Title " + random.nextInt(size);
+        }
+
+        // Warm up the lookup path before measuring.
+        long found = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (itemList.findItem(titles[i]) != null) {
+                found++;
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (itemList.findItem(titles[i]) != null) {
+                found++;
+            }
+        }
+        long findTime = System.nanoTime() - start;
+
+        int[] copies = new int[OPERATIONS];
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            copies[i] = itemList.claimCopy(itemList.findItem(titles[i]).libraryItem);
+        }
+        long claimTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (copies[i] >= 0) {
+                itemList.returnCopy(itemList.findItem(titles[i]).libraryItem, copies[i]);
+            }
+        }
+        long returnTime = System.nanoTime() - start;
+
+        int removals = Math.min(REMOVALS, size);
+        String[] removedTitles = new String[removals];
+        for (int i = 0; i < removals; i++) {
+            removedTitles[i] = "Title " + (i * (size / removals));
+            // Lend out all but one copy, so that removeItem drops the title rather than one copy.
+            LibraryItem item = itemList.findItem(removedTitles[i]).libraryItem;
+            while (item.getStock() > 1) {
+                itemList.claimCopy(item);
+            }
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < removals; i++) {
+            itemList.removeItem(removedTitles[i]);
+        }
+        long removeTime = System.nanoTime() - start;
+
+        if (found != 2L * OPERATIONS) {
+            System.out.println("Error: lookups missed items in a catalog of " + size);
+        }
+        System.out.printf("%12d %12.1f %12.1f %12.1f %12.1f%n", size,
+                (double) findTime / OPERATIONS,
+                (double) claimTime / OPERATIONS,
+                (double) returnTime / OPERATIONS,
+                (double) removeTime / removals);
+    }
+
+    /**
+     * Measures lookups of titles that are not in the catalog, through the
+     * title filter of the list and through a bare TitleIndex.
+     * @param size The number of items in the catalog.
+     */
+    private static void benchmarkMissingTitles(int size) {
+        LibraryItemList itemList = new LibraryItemList();
+        TitleIndex titleIndex = new TitleIndex();
+        for (int i = 0; i < size; i++) {
+            itemList.addItem(new Book("Title " + i, "Author", 1, "Publisher"));
+            titleIndex.put(new LibraryItemNode(new Book("Title " + i, "Author", 1, "Publisher")));
+        }
+
+        Random random = new Random(5);
+        String[] titles = new String[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            titles[i] = "Titel " + random.nextInt(size);
+        }
+
+        // Typed titles are new strings whose hash code has not been computed yet,
+        // so each lookup copies its title first.
+        // Warm up both lookup paths before measuring.
+        long found = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (itemList.findItem(new String(titles[i])) != null || titleIndex.get(new String(titles[i])) != null) {
+                found++;
+            }
+        }
+
+        long lookupsBefore = itemList.getFilterLookups();
+        long falsePositivesBefore = itemList.getFilterFalsePositives();
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (itemList.findItem(new String(titles[i])) != null) {
+                found++;
+            }
+        }
+        long filteredTime = System.nanoTime() - start;
+        long falsePositives = itemList.getFilterFalsePositives() - falsePositivesBefore;
+        long lookups = itemList.getFilterLookups() - lookupsBefore;
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (titleIndex.get(new String(titles[i])) != null) {
+                found++;
+            }
+        }
+        long indexTime = System.nanoTime() - start;
+
+        if (found != 0) {
+            System.out.println("Error: lookups found missing titles in a catalog of " + size);
+        }
+        System.out.printf("%12d %12.1f %12.1f %12.4f%n", size,
+                (double) filteredTime / OPERATIONS,
+                (double) indexTime / OPERATIONS,
+                100.0 * falsePositives / lookups);
+    }
+
+    /**
+     * Measures exact and prefix author queries on a catalog of the given size.
+     * Each author has about 20 items.
+     * @param size The number of items in the catalog.
+     */
+    private static void benchmarkAuthorSearch(int size) {
+        LibraryItemList itemList = new LibraryItemList();
+        int authors = Math.max(1, size / 20);
+        for (int i = 0; i < size; i++) {
+            itemList.addItem(new Book("Title " + i, "Author " + (i % authors), 1, "Publisher"));
+        }
+
+        int queries = 100_000;
+        Random random = new Random(7);
+        String[] names = new String[queries];
+        String[] prefixes = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            String name = "Author " + random.nextInt(authors);
+            names[i] = name;
+            prefixes[i] = name.substring(0, Math.min(name.length(), 9));
+        }
+
+        long results = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            results += itemList.findItemsByAuthor(names[i]).size();
+        }
+        long exactTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            results += itemList.findItemsByAuthorPrefix(prefixes[i], 50).size();
+        }
+        long prefixTime = System.nanoTime() - start;
+
+        if (results == 0) {
+            System.out.println("Error: author queries returned no items in a catalog of " + size);
+        }
+        System.out.printf("%12d %12.2f %12.2f%n", size,
+                exactTime / 1000.0 / queries,
+                prefixTime / 1000.0 / queries);
+    }
+
+    /**
+     * Measures fetching the first page of a random title range and then the
+     * page after it through the cursor, on a catalog of the given size.
+     * @param size The number of items in the catalog.
+     */
+    private static void benchmarkSortedListing(int size) {
+        LibraryItemList itemList = new LibraryItemList();
+        for (int i = 0; i < size; i++) {
+            itemList.addItem(new Book("Title " + i, "Author", 1, "Publisher"));
+        }
+
+        int queries = 100_000;
+        Random random = new Random(11);
+        String[] starts = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = "Title " + random.nextInt(size);
+        }
+
+        TitleKey[] cursors = new TitleKey[queries];
+        long results = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            TitlePage page = itemList.listItems(starts[i], "", null, 50);
+            results += page.items.size();
+            cursors[i] = page.nextCursor;
+        }
+        long firstTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            results += itemList.listItems(starts[i], "", cursors[i], 50).items.size();
+        }
+        long nextTime = System.nanoTime() - start;
+
+        if (results == 0) {
+            System.out.println("Error: listing returned no items in a catalog of " + size);
+        }
+        System.out.printf("%12d %12.2f %12.2f%n", size,
+                firstTime / 1000.0 / queries,
+                nextTime / 1000.0 / queries);
+    }
+
+    /**
+     * Measures the latest issue, a year of issues and the first available
+     * issues of a series, on a catalog of magazines with 600 monthly issues
+     * per title. Every other issue is out of stock.
+     * @param size The number of items in the catalog.
+     */
+    private static void benchmarkMagazineSeries(int size) {
+        LibraryItemList itemList = new LibraryItemList();
+        int titles = Math.max(1, size / 600);
+        for (int i = 0; i < size; i++) {
+            int month = i / titles;
+            String issue = (1975 + month / 12) + "-" + (month % 12 + 1);
+            itemList.addItem(new Magazine("Magazine " + (i % titles), "Editor", (month % 2), issue));
+        }
+
+        int queries = 100_000;
+        Random random = new Random(13);
+        String[] names = new String[queries];
+        String[] years = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            names[i] = "Magazine " + random.nextInt(titles);
+            years[i] = String.valueOf(1975 + random.nextInt(Math.max(1, size / titles / 12)));
+        }
+
+        long results = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            results += itemList.findLatestIssue(names[i]).size();
+        }
+        long latestTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            results += itemList.findIssues(names[i], years[i], years[i], false, 50).size();
+        }
+        long rangeTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            results += itemList.findIssues(names[i], "", "", true, 10).size();
+        }
+        long availableTime = System.nanoTime() - start;
+
+        if (results == 0) {
+            System.out.println("Error: series queries returned no issues in a catalog of " + size);
+        }
+        System.out.printf("%12d %12.2f %12.2f %12.2f%n", size,
+                latestTime / 1000.0 / queries,
+                rangeTime / 1000.0 / queries,
+                availableTime / 1000.0 / queries);
+    }
+
+    /**
+     * Measures two-term AND and OR keyword queries on a catalog of the given size.
+     * Titles are three words drawn from a vocabulary of 5000 words.
+     * @param size The number of items in the catalog.
+     */
+    private static void benchmarkKeywordSearch(int size) {
+        String[] vocabulary = new String[5000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = "w" + Integer.toString(i, 36);
+        }
+        Random random = new Random(11);
+        LibraryItemList itemList = new LibraryItemList();
+        for (int i = 0; i < size; i++) {
+            String title = vocabulary[random.nextInt(vocabulary.length)] + " "
+                    + vocabulary[random.nextInt(vocabulary.length)] + " "
+                    + vocabulary[random.nextInt(vocabulary.length)];
+            itemList.addItem(new Book(title, "Author " + (i % 1000), 1, "Publisher " + (i % 100)));
+        }
+
+        int queries = 2_000;
+        String[] firstTerms = new String[queries];
+        String[] secondTerms = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            firstTerms[i] = vocabulary[random.nextInt(vocabulary.length)];
+            secondTerms[i] = vocabulary[random.nextInt(vocabulary.length)];
+        }
+
+        long results = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            results += itemList.searchItems(firstTerms[i] + " " + secondTerms[i], 50).size();
+        }
+        long andTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            results += itemList.searchItems(firstTerms[i] + " OR " + secondTerms[i], 50).size();
+        }
+        long orTime = System.nanoTime() - start;
+
+        if (results == 0) {
+            System.out.println("Error: keyword queries returned no items in a catalog of " + size);
+        }
+        System.out.printf("%12d %12.2f %12.2f%n", size,
+                andTime / 1000.0 / queries,
+                orTime / 1000.0 / queries);
+    }
+
+    /**
+     * Compares the heap used by a LibraryItemList and a ColumnarCatalog holding
+     * the same items, their title lookup latency, and the cost of claiming and
+     * returning a copy in the columnar catalog.
+     * @param size The number of items in the catalog.
+     */
+    private static void benchmarkColumnarCatalog(int size) {
+        long before = usedHeap();
+        LibraryItemList itemList = new LibraryItemList();
+        for (int i = 0; i < size; i++) {
+            itemList.addItem(new Book("Title " + i, "Author " + (i % 1000), 1, "Publisher " + (i % 100)));
+        }
+        long listHeap = usedHeap() - before;
+
+        before = usedHeap();
+        ColumnarCatalog catalog = new ColumnarCatalog(size);
+        for (int i = 0; i < size; i++) {
+            catalog.addItem(new Book("Title " + i, "Author " + (i % 1000), 1, "Publisher " + (i % 100)));
+        }
+        long columnHeap = usedHeap() - before;
+
+        Random random = new Random(5);
+        String[] titles = new String[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            titles[i] = "Title " + random.nextInt(size);
+        }
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (itemList.findItem(titles[i]) != null) {
+                found++;
+            }
+        }
+        long listTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (catalog.findItem(titles[i]) >= 0) {
+                found++;
+            }
+        }
+        long columnTime = System.nanoTime() - start;
+        long claimTime = benchmarkStoreClaims(catalog, titles);
+
+        if (found != 2L * OPERATIONS || itemList.size() != catalog.size()) {
+            System.out.println("Error: catalogs disagree for a catalog of " + size);
+        }
+        System.out.printf("%12d %12d %12d %12.1f %12.1f %12.1f%n", size,
+                listHeap / size, columnHeap / size,
+                (double) listTime / OPERATIONS, (double) columnTime / OPERATIONS,
+                (double) claimTime / OPERATIONS);
+    }
+
+    /**
+     * Claims a copy of each title from a catalog store and returns it again,
+     * checking that every claim is matched by its return.
+     * @param catalog The catalog store, holding one copy of each title.
+     * @param titles The titles to claim.
+     * @return The time spent claiming and returning, in nanoseconds.
+     */
+    private static long benchmarkStoreClaims(CatalogStore catalog, String[] titles) {
+        long start = System.nanoTime();
+        for (String title : titles) {
+            int id = catalog.findItem(title);
+            int copyId = catalog.claimCopy(id);
+            if (copyId < 0 || catalog.claimCopy(id) >= 0 || !catalog.returnCopy(id, copyId)) {
+                System.out.println("Error: copy claims disagree with the stock of " + title);
+                break;
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return The heap in use after a garbage collection, in bytes.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Measures the heap used by a MappedCatalog, its lookup latency, the cost of
+     * claiming and returning a copy, and how long it takes to reopen the file.
+     * @param size The number of items in the catalog.
+     * @throws IOException If the temporary catalog file cannot be used.
+     */
+    private static void benchmarkMappedCatalog(int size) throws IOException {
+        File file = File.createTempFile("catalog", ".bin");
+        file.delete();
+        try {
+            long before = usedHeap();
+            MappedCatalog catalog = MappedCatalog.open(file.getPath(), size, size * 64L);
+            for (int i = 0; i < size; i++) {
+                catalog.addItem(new Book("Title " + i, "Author " + (i % 1000), 1, "Publisher " + (i % 100)));
+            }
+            long heap = Math.max(0, usedHeap() - before);
+
+            Random random = new Random(9);
+            String[] titles = new String[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++) {
+                titles[i] = "Title " + random.nextInt(size);
+            }
+            long found = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++) {
+                if (catalog.findItem(titles[i]) >= 0) {
+                    found++;
+                }
+            }
+            long findTime = System.nanoTime() - start;
+            long claimTime = benchmarkStoreClaims(catalog, titles);
+            catalog.close();
+
+            start = System.nanoTime();
+            MappedCatalog reopened = MappedCatalog.open(file.getPath(), 0, 0);
+            long reopenTime = System.nanoTime() - start;
+            if (found != OPERATIONS || reopened.size() != size || reopened.findItem("Title 0") != 0) {
+                System.out.println("Error: mapped catalog lost items in a catalog of " + size);
+            }
+            reopened.close();
+
+            System.out.printf("%12d %12d %12.1f %12.1f %12.2f%n", size, heap / size,
+                    (double) findTime / OPERATIONS, (double) claimTime / OPERATIONS,
+                    reopenTime / 1_000_000.0);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Measures finding a borrower by name, and removing a borrower and adding
+     * them back, on a borrower list of the given size.
+     * @param size The number of borrowers in the list.
+     */
+    private static void benchmarkBorrowerList(int size) {
+        BorrowerRegistry registry = new BorrowerRegistry();
+        BorrowerList borrowerList = new BorrowerList(registry);
+        for (int i = 0; i < size; i++) {
+            String name = "Borrower " + i;
+            borrowerList.addBorrower(new Borrower(registry.register(name), name));
+        }
+
+        Random random = new Random(17);
+        String[] names = new String[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            names[i] = "Borrower " + random.nextInt(size);
+        }
+
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (borrowerList.findBorrower(names[i]) != null) {
+                found++;
+            }
+        }
+        long findTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            Borrower borrower = borrowerList.findBorrower(names[i]);
+            borrowerList.removeBorrower(names[i]);
+            borrowerList.addBorrower(borrower);
+        }
+        long churnTime = System.nanoTime() - start;
+
+        if (found != OPERATIONS || borrowerList.size() != size) {
+            System.out.println("Error: borrowers went missing from a list of " + size);
+        }
+        System.out.printf("%12d %12.1f %12.1f%n", size,
+                (double) findTime / OPERATIONS,
+                (double) churnTime / OPERATIONS);
+    }
+
+    /**
+     * Measures returning the loan of a borrower for a title and lending the copy
+     * again, and listing the outstanding loans of a title, with the given number
+     * of loans out.
+     * @param size The number of outstanding loans.
+     */
+    private static void benchmarkLoanReturns(int size) {
+        int titles = Math.max(1, size / 10);
+        Book[] books = new Book[titles];
+        for (int i = 0; i < titles; i++) {
+            books[i] = new Book("Title " + i, "Author " + i, 10, "Publisher");
+        }
+        BorrowedItemList borrowedItemList = new BorrowedItemList(new BorrowerRegistry());
+        long dueDate = System.currentTimeMillis() + 14 * DAY_MILLIS;
+        for (int i = 0; i < size; i++) {
+            borrowedItemList.borrowItem(books[i % titles], i, i, "2024-01-01", dueDate);
+        }
+
+        Random random = new Random(19);
+        int[] loans = new int[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            loans[i] = random.nextInt(size);
+        }
+
+        long returned = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int loan = loans[i];
+            BorrowedItemNode node = borrowedItemList.returnItem(loan, books[loan % titles].getTitle());
+            if (node != null) {
+                returned++;
+                borrowedItemList.borrowItem(node.item, node.copyId, node.borrowerId, node.borrowDate, node.dueDate);
+            }
+        }
+        long returnTime = System.nanoTime() - start;
+
+        long listed = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            listed += borrowedItemList.findLoans(books[loans[i] % titles].getTitle()).size();
+        }
+        long listTime = System.nanoTime() - start;
+
+        int outstanding = 0;
+        for (Book book : books) {
+            outstanding += borrowedItemList.countLoans(book.getTitle());
+        }
+        if (returned != OPERATIONS || outstanding != size || listed < OPERATIONS) {
+            System.out.println("Error: loans went missing from a list of " + size);
+        }
+        System.out.printf("%12d %12.1f %12.1f%n", size,
+                (double) returnTime / OPERATIONS,
+                (double) listTime / OPERATIONS);
+    }
+
+    /**
+     * Measures finding overdue loans. The loans fall due at random times over
+     * the next 28 days; the overdue loans are listed when 1% of them are
+     * overdue, compared with scanning every loan for its due date, and then
+     * the clock is moved forward an hour at a time until all are overdue.
+     * @param size The number of outstanding loans.
+     */
+    private static void benchmarkOverdueLoans(int size) {
+        long now = System.currentTimeMillis();
+        BorrowedItemList borrowedItemList = new BorrowedItemList(new BorrowerRegistry());
+        Book book = new Book("Popular Title", "Author", size, "Publisher");
+        Random random = new Random(23);
+        long period = 28 * DAY_MILLIS;
+        for (int i = 0; i < size; i++) {
+            borrowedItemList.borrowItem(book, i, i, "2024-01-01", now + 1 + (long) (random.nextDouble() * period));
+        }
+
+        // Due dates are checked to the minute, so the query time is kept on a whole minute.
+        long soon = (now + period / 100) / 60_000 * 60_000;
+        int overdue = borrowedItemList.countOverdue(soon);
+        int queries = 100;
+        long listed = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            listed += borrowedItemList.findOverdue(soon).size();
+        }
+        long queryTime = System.nanoTime() - start;
+
+        long scanned = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            for (BorrowedItemNode node = borrowedItemList.head; node != null; node = node.next) {
+                if (node.dueDate <= soon) {
+                    scanned++;
+                }
+            }
+        }
+        long scanTime = System.nanoTime() - start;
+
+        long hour = DAY_MILLIS / 24;
+        start = System.nanoTime();
+        for (long time = soon + hour; time <= now + period + hour; time += hour) {
+            borrowedItemList.countOverdue(time);
+        }
+        long expireTime = System.nanoTime() - start;
+        int expired = borrowedItemList.countOverdue(now + period + hour);
+
+        if (listed != (long) queries * overdue || scanned != listed || expired != size) {
+            System.out.println("Error: overdue loans went missing from a list of " + size);
+        }
+        System.out.printf("%12d %12.1f %12.1f %12.1f%n", size,
+                (double) expireTime / Math.max(1, size - overdue),
+                queryTime / 1000.0 / queries,
+                scanTime / 1000.0 / queries);
+    }
+
+    /**
+     * Measures adding WAITERS borrowers to the waitlists of WAITLIST_TITLES titles,
+     * serving the next waiter of a random title, cancelling the hold of a random
+     * borrower, and counting the waiters. Served and cancelled borrowers join
+     * the waitlist again, so the number of waiters stays the same. The cancel
+     * time includes the purge that unlinks the cancelled holds. Finally one
+     * title is drained to check that holds come out in priority order.
+     */
+    private static void benchmarkWaitlists() {
+        String[] titles = new String[WAITLIST_TITLES];
+        for (int i = 0; i < WAITLIST_TITLES; i++) {
+            titles[i] = "Title " + i;
+        }
+        Random random = new Random(29);
+        int[] wanted = new int[WAITERS];
+        HoldPriority[] priorities = new HoldPriority[WAITERS];
+        for (int i = 0; i < WAITERS; i++) {
+            wanted[i] = random.nextInt(WAITLIST_TITLES);
+            int kind = random.nextInt(100);
+            priorities[i] = kind < 5 ? HoldPriority.ACCESSIBILITY : kind < 15 ? HoldPriority.FACULTY : HoldPriority.STANDARD;
+        }
+
+        ConcurrentWaitlist waitlist = new ConcurrentWaitlist(new BorrowerRegistry());
+        WaitlistNode[] holds = new WaitlistNode[WAITERS];
+        long start = System.nanoTime();
+        for (int i = 0; i < WAITERS; i++) {
+            holds[i] = waitlist.enqueue(i, titles[wanted[i]], "2024-01-01 00:00:00", priorities[i], WaitlistNode.NEVER);
+        }
+        long enqueueTime = System.nanoTime() - start;
+
+        long served = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < WAITERS; i++) {
+            String title = titles[random.nextInt(WAITLIST_TITLES)];
+            if (waitlist.hasBorrowerInQueue(title)) {
+                WaitlistNode next = waitlist.dequeue(title);
+                served++;
+                int id = next.borrowerId;
+                holds[id] = waitlist.enqueue(id, next.itemTitle, next.enqueueTime, next.priority, WaitlistNode.NEVER);
+            }
+        }
+        long nextTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < WAITERS; i++) {
+            int id = random.nextInt(WAITERS);
+            WaitlistNode hold = holds[id];
+            if (waitlist.cancel(hold)) {
+                holds[id] = waitlist.enqueue(id, hold.itemTitle, hold.enqueueTime, hold.priority, WaitlistNode.NEVER);
+            }
+        }
+        waitlist.purge();
+        long cancelTime = System.nanoTime() - start;
+
+        long counted = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            counted += waitlist.size();
+        }
+        long sizeTime = System.nanoTime() - start;
+
+        boolean ordered = true;
+        int drained = 0;
+        int rank = HoldPriority.ACCESSIBILITY.getRank();
+        WaitlistNode next;
+        while ((next = waitlist.dequeue(titles[0])) != null) {
+            ordered &= next.priority.getRank() <= rank;
+            rank = next.priority.getRank();
+            drained++;
+        }
+        if (waitlist.size() + drained != WAITERS || counted != (long) OPERATIONS * WAITERS
+                || served == 0 || !ordered) {
+            System.out.println("Error: waiters went missing from the waitlists or were served out of order");
+        }
+        System.out.printf("%12.1f %12.1f %12.1f %12.1f%n",
+                (double) enqueueTime / WAITERS,
+                (double) nextTime / WAITERS,
+                (double) cancelTime / WAITERS,
+                (double) sizeTime / OPERATIONS);
+    }
+
+    /**
+     * Lets a number of terminals place WAITERS holds on random titles at once,
+     * and then lets the same number of terminals serve every title until all
+     * waitlists are empty, as returns would. Every hold must be served exactly once.
+     * @param threads The number of terminals.
+     */
+    private static void benchmarkConcurrentWaitlist(final int threads) {
+        final String[] titles = new String[WAITLIST_TITLES];
+        for (int i = 0; i < WAITLIST_TITLES; i++) {
+            titles[i] = "Title " + i;
+        }
+        final int[] wanted = new int[WAITERS];
+        Random random = new Random(31);
+        for (int i = 0; i < WAITERS; i++) {
+            wanted[i] = random.nextInt(WAITLIST_TITLES);
+        }
+        final ConcurrentWaitlist waitlist = new ConcurrentWaitlist(new BorrowerRegistry());
+        // Counts how often each hold was served, which must be exactly once.
+        final AtomicIntegerArray served = new AtomicIntegerArray(WAITERS);
+
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int terminal = t;
+            producers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = terminal; i < WAITERS; i += threads) {
+                        waitlist.enqueue(i, titles[wanted[i]], "2024-01-01 00:00:00");
+                    }
+                }
+            });
+        }
+        long enqueueTime = runAll(producers);
+
+        int waiting = waitlist.size();
+        Thread[] consumers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = (int) ((long) t * WAITLIST_TITLES / threads);
+            consumers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // Every terminal serves every title, starting at a different one.
+                    for (int i = 0; i < WAITLIST_TITLES; i++) {
+                        String title = titles[(offset + i) % WAITLIST_TITLES];
+                        WaitlistNode hold;
+                        while ((hold = waitlist.dequeue(title)) != null) {
+                            served.incrementAndGet(hold.borrowerId);
+                        }
+                    }
+                }
+            });
+        }
+        long dequeueTime = runAll(consumers);
+
+        int misserved = 0;
+        for (int i = 0; i < WAITERS; i++) {
+            if (served.get(i) != 1) {
+                misserved++;
+            }
+        }
+        if (waiting != WAITERS || waitlist.size() != 0 || misserved > 0) {
+            System.out.println("Error: holds were lost or served twice with " + threads + " terminals");
+        }
+        System.out.printf("%12d %12.0f %12.1f %12.1f %12d%n", threads,
+                WAITERS * 1e9 / enqueueTime,
+                (double) enqueueTime / WAITERS,
+                (double) dequeueTime / WAITERS,
+                misserved);
+    }
+
+    /**
+     * Measures expiring holds in batches with a HoldExpiryScheduler. Of WAITERS
+     * holds, EXPIRING_HOLDS expire in an hour and the rest over the next 30
+     * days; the clock is moved to just after the hour and then past the 30 days.
+     */
+    private static void benchmarkHoldExpiry() {
+        ConcurrentWaitlist waitlist = new ConcurrentWaitlist(new BorrowerRegistry());
+        HoldExpiryScheduler scheduler = new HoldExpiryScheduler(waitlist);
+        long now = System.currentTimeMillis();
+        long hour = DAY_MILLIS / 24;
+        Random random = new Random(37);
+        for (int i = 0; i < WAITERS; i++) {
+            long expiresAt = i < EXPIRING_HOLDS ? now + hour : now + 2 * hour + (long) (random.nextDouble() * 30 * DAY_MILLIS);
+            WaitlistNode hold = waitlist.enqueue(i, "Title " + random.nextInt(WAITLIST_TITLES), "2024-01-01 00:00:00",
+                    HoldPriority.STANDARD, expiresAt);
+            scheduler.schedule(hold);
+        }
+        // Moves the holds from the inbox onto the wheel.
+        scheduler.expireDue(now);
+
+        long start = System.nanoTime();
+        int first = scheduler.expireDue(now + hour + 1000);
+        long firstTime = System.nanoTime() - start;
+        int left = waitlist.size();
+
+        start = System.nanoTime();
+        int rest = scheduler.expireDue(now + 31 * DAY_MILLIS);
+        long restTime = System.nanoTime() - start;
+
+        if (first != EXPIRING_HOLDS || left != WAITERS - EXPIRING_HOLDS || rest != left || waitlist.size() != 0
+                || waitlist.titleCount() != 0) {
+            System.out.println("Error: holds were not expired on time");
+        }
+        System.out.printf("%12s %12d %12.1f %12.1f%n", "first hour", first, firstTime / 1e6, (double) firstTime / Math.max(1, first));
+        System.out.printf("%12s %12d %12.1f %12.1f%n", "30 days", rest, restTime / 1e6, (double) restTime / Math.max(1, rest));
+    }
+
+    /**
+     * Measures returning MASS_RETURNS copies, in random order, through a
+     * ReturnDispatcher. Every copy of MASS_RETURNS / 10 titles is out on loan
+     * and every other title has 5 holds on it, so a quarter of the copies go
+     * to waiting borrowers and the rest back on the shelf. Dispatched one by
+     * one, each return is matched and committed before the next is taken; on
+     * the dispatcher thread the returns are only posted, and the thread
+     * commits them in batches. ns/return is the time the returning thread
+     * spends per copy, returns/s counts until the last copy is committed.
+     * @param threaded True to dispatch on the dispatcher thread.
+     */
+    private static void benchmarkMassReturns(boolean threaded) {
+        BorrowerRegistry registry = new BorrowerRegistry();
+        LibraryItemList itemList = new LibraryItemList();
+        BorrowedItemList borrowedItemList = new BorrowedItemList(registry);
+        BorrowerList borrowerList = new BorrowerList(registry);
+        TransactionList transactionList = new TransactionList(borrowerList);
+        ConcurrentWaitlist waitlist = new ConcurrentWaitlist(registry);
+        ReturnDispatcher dispatcher = new ReturnDispatcher(itemList, borrowedItemList, borrowerList, transactionList,
+                waitlist, registry, new ReturnsInbox(MASS_RETURNS, OverflowPolicy.REJECT), new Object(), false);
+
+        int titles = MASS_RETURNS / 10;
+        Book[] books = new Book[titles];
+        int[] copies = new int[MASS_RETURNS];
+        long dueDate = System.currentTimeMillis() + 14 * DAY_MILLIS;
+        for (int i = 0; i < titles; i++) {
+            books[i] = new Book("Title " + i, "Author " + i, 10, "Publisher");
+            itemList.addItem(books[i]);
+            for (int c = 0; c < 10; c++) {
+                int copyId = itemList.claimCopy(books[i]);
+                borrowedItemList.borrowItem(books[i], copyId, registry.register("Owner " + i), "2024-01-01", dueDate);
+                copies[i * 10 + c] = copyId;
+            }
+            if (i % 2 == 0) {
+                for (int h = 0; h < 5; h++) {
+                    waitlist.enqueue(registry.register("Reader " + i + "-" + h), books[i].getTitle(),
+                            "2024-01-01 00:00:00");
+                }
+            }
+        }
+        Random random = new Random(41);
+        for (int i = MASS_RETURNS - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int copy = copies[i];
+            copies[i] = copies[j];
+            copies[j] = copy;
+        }
+        int holds = waitlist.size();
+
+        if (threaded) {
+            dispatcher.start();
+        }
+        long start = System.nanoTime();
+        for (int copyId : copies) {
+            BorrowedItemNode loan = borrowedItemList.returnCopy(copyId);
+            dispatcher.copyAvailable(loan.item, loan.copyId);
+            if (!threaded) {
+                dispatcher.flush();
+            }
+        }
+        long postTime = System.nanoTime() - start;
+        while (dispatcher.lentCount() + dispatcher.shelvedCount() < MASS_RETURNS) {
+            Thread.yield();
+        }
+        long totalTime = System.nanoTime() - start;
+        dispatcher.stop();
+
+        int stock = 0;
+        int loans = 0;
+        for (Book book : books) {
+            stock += book.getStock();
+            loans += borrowedItemList.countLoans(book.getTitle());
+        }
+        if (dispatcher.lentCount() != holds || loans != holds || stock != MASS_RETURNS - holds
+                || waitlist.size() != 0) {
+            System.out.println("Error: returned copies were not dispatched correctly");
+        }
+        System.out.printf("%12s %12d %12d %12.1f %12.0f%n", threaded ? "thread" : "one by one",
+                dispatcher.lentCount(), dispatcher.shelvedCount(),
+                (double) postTime / MASS_RETURNS,
+                MASS_RETURNS / (totalTime / 1e9));
+    }
+
+    /**
+     * Measures pushing OPERATIONS returned items into an inbox and draining them
+     * in batches of 256. A blocking inbox is drained by a second thread while
+     * the items are pushed; the others are drained after all pushes, so a
+     * small rejecting inbox turns most items away and a small spilling inbox
+     * writes them to disk and reads them back in.
+     * @param policy The overflow policy of the inbox.
+     * @param capacity The capacity of the inbox.
+     */
+    private static void benchmarkReturnsInbox(OverflowPolicy policy, int capacity) throws IOException {
+        final int batchSize = 256;
+        LibraryItemList catalog = new LibraryItemList();
+        Book[] books = new Book[1_000];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new Book("Title " + i, "Author " + i, 1, "Publisher");
+            catalog.addItem(books[i]);
+        }
+        final ReturnsInbox inbox;
+        if (policy == OverflowPolicy.SPILL) {
+            File spillFile = File.createTempFile("returns", ".spill");
+            inbox = new ReturnsInbox(capacity, spillFile, catalog);
+        } else {
+            inbox = new ReturnsInbox(capacity, policy);
+        }
+        final long[] drained = new long[1];
+        Thread drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                List<LibraryItem> batch = new ArrayList<>(batchSize);
+                while (drained[0] < OPERATIONS) {
+                    drained[0] += inbox.drainTo(batch, batchSize);
+                    batch.clear();
+                }
+            }
+        });
+        boolean blocking = inbox.getPolicy() == OverflowPolicy.BLOCK;
+        if (blocking) {
+            drainer.start();
+        }
+
+        long accepted = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (inbox.push(books[i % books.length])) {
+                accepted++;
+            }
+        }
+        long pushTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        if (blocking) {
+            try {
+                drainer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            List<LibraryItem> batch = new ArrayList<>(batchSize);
+            while (inbox.drainTo(batch, batchSize) > 0) {
+                drained[0] += batch.size();
+                batch.clear();
+            }
+        }
+        long drainTime = System.nanoTime() - start;
+        long spilled = inbox.spilledTotal();
+        inbox.close();
+
+        if (drained[0] != accepted || accepted + inbox.rejectedCount() != OPERATIONS || !inbox.isEmpty()) {
+            System.out.println("Error: returned items went missing from the " + inbox.getPolicy().getName() + " inbox");
+        }
+        System.out.printf("%12s %12d %12.1f %12.1f %12d%n", inbox.getPolicy().getName(), inbox.capacity(),
+                (double) pushTime / OPERATIONS,
+                (double) drainTime / Math.max(1, drained[0]),
+                spilled);
+    }
+
+    /**
+     * Measures planning the reshelving of a batch of returns with a
+     * ReshelvingPlanner, compared with sorting the batch by shelf key with a
+     * comparison sort. The returns are drawn from 100,000 items with random
+     * Library of Congress style call numbers. Each is the best of 5 runs.
+     * @param returns The number of returns in the batch.
+     */
+    private static void benchmarkReshelving(int returns) {
+        Random random = new Random(43);
+        Book[] books = new Book[100_000];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new Book("Title " + i, "Author " + i, 1, "Publisher");
+            books[i].setCallNumber("" + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26))
+                    + (1 + random.nextInt(9999)) + "." + random.nextInt(100) + " ." + (char) ('A' + random.nextInt(26))
+                    + random.nextInt(100));
+        }
+        List<LibraryItem> batch = new ArrayList<>(returns);
+        for (int i = 0; i < returns; i++) {
+            batch.add(books[random.nextInt(books.length)]);
+        }
+
+        ReshelvingPlanner planner = new ReshelvingPlanner(new ReturnsInbox(1, OverflowPolicy.REJECT), returns, 50);
+        long radixTime = Long.MAX_VALUE;
+        List<PickList> pickLists = null;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            pickLists = planner.plan(batch);
+            radixTime = Math.min(radixTime, System.nanoTime() - start);
+        }
+
+        long sortTime = Long.MAX_VALUE;
+        LibraryItem[] sorted = null;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            sorted = batch.toArray(new LibraryItem[returns]);
+            Arrays.sort(sorted, new Comparator<LibraryItem>() {
+                @Override
+                public int compare(LibraryItem a, LibraryItem b) {
+                    return Long.compare(a.getShelfKey(), b.getShelfKey());
+                }
+            });
+            sortTime = Math.min(sortTime, System.nanoTime() - start);
+        }
+
+        int index = 0;
+        boolean ordered = true;
+        for (PickList pickList : pickLists) {
+            for (LibraryItem item : pickList.items) {
+                ordered &= item.getShelfKey() == sorted[index++].getShelfKey();
+            }
+        }
+        if (!ordered || index != returns) {
+            System.out.println("Error: the reshelving plan is not in shelf order");
+        }
+        System.out.printf("%12d %12.2f %12.2f %12d%n", returns, radixTime / 1e6, sortTime / 1e6, pickLists.size());
+    }
+
+    /**
+     * Starts threads and waits for all of them to finish.
+     * @param threads The threads to run.
+     * @return The time from starting the first thread until the last one finished, in nanoseconds.
+     */
+    private static long runAll(Thread[] threads) {
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Lets TERMINALS threads borrow and return copies of the same title at once and
+     * checks that no copy is ever lent to two of them.
+     * @param stock The number of copies of the title.
+     */
+    private static void benchmarkConcurrentReservation(final int stock) {
+        final Book item = new Book("Popular Title", "Author", stock, "Publisher");
+        item.assignCopies(0);
+        final int attempts = 200_000;
+        final AtomicLong borrowed = new AtomicLong();
+        final AtomicLong overbooked = new AtomicLong();
+        // Counts the holders of each copy, which must never exceed one.
+        final AtomicIntegerArray holders = new AtomicIntegerArray(stock);
+        Thread[] terminals = new Thread[TERMINALS];
+        for (int t = 0; t < TERMINALS; t++) {
+            terminals[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int[] held = new int[attempts];
+                    int heldCount = 0;
+                    for (int i = 0; i < attempts; i++) {
+                        // Borrow twice for every return, so the item keeps running out.
+                        if (i % 3 == 2 && heldCount > 0) {
+                            int copyId = held[--heldCount];
+                            holders.decrementAndGet(copyId);
+                            item.returnCopy(copyId);
+                        } else {
+                            int copyId = item.claimCopy();
+                            if (copyId >= 0) {
+                                if (holders.incrementAndGet(copyId) > 1) {
+                                    overbooked.incrementAndGet();
+                                }
+                                borrowed.incrementAndGet();
+                                held[heldCount++] = copyId;
+                            }
+                        }
+                    }
+                    while (heldCount > 0) {
+                        int copyId = held[--heldCount];
+                        holders.decrementAndGet(copyId);
+                        item.returnCopy(copyId);
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread terminal : terminals) {
+            terminal.start();
+        }
+        for (Thread terminal : terminals) {
+            try {
+                terminal.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        long time = System.nanoTime() - start;
+
+        if (overbooked.get() > 0 || item.getStock() != stock) {
+            System.out.println("Error: copies were lent twice " + overbooked.get() + " times");
+        }
+        System.out.printf("%12d %12d %12d %12.1f%n", stock, borrowed.get(), item.getStock(),
+                (double) time / ((long) attempts * TERMINALS));
+    }
+}
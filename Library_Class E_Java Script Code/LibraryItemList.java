@@ -1,9 +1,17 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
- * Node for a single linked list representing a list of Library Items.
+ * Node for a doubly linked list representing a list of Library Items.
+ * The node is also linked into the chain of nodes that share its title in the TitleIndex.
  */
 class LibraryItemNode {
     LibraryItem libraryItem;
     LibraryItemNode next;
+    LibraryItemNode prev;
+    LibraryItemNode nextSameTitle;
+    LibraryItemNode prevSameTitle;
 
     /**
      * Constructor for LibraryItemNode.
@@ -12,22 +20,79 @@ class LibraryItemNode {
     LibraryItemNode(LibraryItem libraryItem) {
         this.libraryItem = libraryItem;
         next = null;
+        prev = null;
+        nextSameTitle = null;
+        prevSameTitle = null;
     }
 }
 
 /**
- * Represents a list of library items using a single linked list. 
+ * Represents a list of library items using a doubly linked list. 
  * Provides methods to add, remove, display, and find items in the list. 
+ * The list keeps the insertion order used for display, while a TitleIndex
+ * maps each title to its node so lookups do not walk the list, an
+ * AuthorIndex answers queries by author, a TextIndex answers keyword searches,
+ * a TitleTrie completes partly typed titles, a SortedTitleIndex lists
+ * titles in alphabetical order one page at a time, and a SeriesIndex groups
+ * magazines by title with their issues in order.
+ * Every item added gets the next catalog id, and nodes can be looked up by id.
+ * Its copies get the next range of copy ids, so every copy in the library
+ * has a barcode of its own.
+ * A TitleFilter in front of the TitleIndex turns away most titles that are
+ * not in the catalog before the index is searched, and the list counts how
+ * often the filter answers so its hit rate can be checked.
  */
 class LibraryItemList {
+    private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.001;
+    private static final int INITIAL_FILTER_CAPACITY = 1024;
+
     LibraryItemNode head;
+    LibraryItemNode tail;
+    private final TitleIndex titleIndex;
+    private final AuthorIndex authorIndex;
+    private final TextIndex textIndex;
+    private final TitleTrie titleTrie;
+    private final SortedTitleIndex sortedTitles;
+    private final SeriesIndex seriesIndex;
+    private final double falsePositiveRate;
+    private TitleFilter titleFilter;
+    private LibraryItemNode[] nodesById;
+    private int nextId;
+    private int nextCopyId;
+    private long filterLookups;
+    private long filterRejections;
+    private long filterFalsePositives;
+    private int filterRebuilds;
 
     /**
      * Constructor for LibraryItemList.
-     * Initializes the list as empty.
+     * Initializes the list as empty, with a title filter that wrongly lets
+     * through about one in a thousand missing titles.
      */
     LibraryItemList() {
+        this(DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Constructor for LibraryItemList.
+     * Initializes the list as empty.
+     * @param falsePositiveRate The share of missing titles the title filter may let through
+     *                          to the TitleIndex, between 0 and 1.
+     */
+    LibraryItemList(double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+        titleFilter = new TitleFilter(INITIAL_FILTER_CAPACITY, falsePositiveRate);
         head = null;
+        tail = null;
+        titleIndex = new TitleIndex();
+        authorIndex = new AuthorIndex();
+        textIndex = new TextIndex();
+        titleTrie = new TitleTrie();
+        sortedTitles = new SortedTitleIndex();
+        seriesIndex = new SeriesIndex();
+        nodesById = new LibraryItemNode[16];
+        nextId = 0;
+        nextCopyId = 0;
     }
 
     /**
@@ -36,47 +101,78 @@ class LibraryItemList {
      */
     void addItem(LibraryItem libraryItem) {
         LibraryItemNode newNode = new LibraryItemNode(libraryItem);
+        if (nextId == nodesById.length) {
+            nodesById = Arrays.copyOf(nodesById, nodesById.length * 2);
+        }
+        libraryItem.setId(nextId);
+        nodesById[nextId++] = newNode;
+        libraryItem.assignCopies(nextCopyId);
+        nextCopyId = Math.addExact(nextCopyId, libraryItem.getCopyCount());
         if (head == null) {
             head = newNode;
         } else {
-            LibraryItemNode current = head;
-            while (current.next != null) {
-                current = current.next;
-            }
-            current.next = newNode;
+            tail.next = newNode;
+            newNode.prev = tail;
         }
+        tail = newNode;
+        boolean newTitle = titleIndex.get(libraryItem.getTitle()) == null;
+        titleIndex.put(newNode);
+        if (newTitle && !titleFilter.add(libraryItem.getTitle())) {
+            rebuildFilter();
+        }
+        authorIndex.add(newNode);
+        textIndex.add(libraryItem);
+        titleTrie.add(newNode);
+        sortedTitles.add(newNode);
+        seriesIndex.add(newNode);
     }
 
     /**
      * Removes a library item from the list by its title. 
-     * If the item has multiple copies, only the stock is decremented. 
+     * If the item has multiple copies, one copy on the shelf is taken out of stock for good. 
      * If it's the last copy, the node is removed from the list. 
      * @param title The title of the item to be removed.
      */
     void removeItem(String title) {
-        if (head == null) {
+        LibraryItemNode node = findItem(title);
+        if (node == null) {
             return;
         }
-        if (head.libraryItem.getTitle().equals(title)) {
-            if (head.libraryItem.getStock() > 1) {
-                head.libraryItem.setStock(head.libraryItem.getStock() - 1);
-            } else {
-                head = head.next; 
-            }
-            return;
+        if (node.libraryItem.getStock() > 1) {
+            // The claimed copy is never returned, so it leaves the stock for good.
+            claimCopy(node.libraryItem);
+        } else {
+            unlink(node);
         }
-        LibraryItemNode current = head;
-        while (current.next != null) {
-            if (current.next.libraryItem.getTitle().equals(title)) {
-                if (current.next.libraryItem.getStock() > 1) {
-                    current.next.libraryItem.setStock(current.next.libraryItem.getStock() - 1);
-                } else {
-                    current.next = current.next.next; 
-                }
-                return;
-            }
-            current = current.next;
+    }
+
+    /**
+     * Unlinks a node from the list and drops it from the indexes.
+     * @param node The LibraryItemNode to be removed.
+     */
+    private void unlink(LibraryItemNode node) {
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
         }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.next = null;
+        node.prev = null;
+        titleIndex.remove(node);
+        if (titleIndex.get(node.libraryItem.getTitle()) == null) {
+            titleFilter.remove(node.libraryItem.getTitle());
+        }
+        authorIndex.remove(node);
+        textIndex.remove(node.libraryItem);
+        titleTrie.remove(node);
+        sortedTitles.remove(node);
+        seriesIndex.remove(node);
+        nodesById[node.libraryItem.getId()] = null;
     }
 
     /**
@@ -100,43 +196,220 @@ class LibraryItemList {
      * @return The LibraryItemNode if the item is found, null otherwise.
      */
     LibraryItemNode findItem(String title) {
-        LibraryItemNode current = head;
-        while (current != null) {
-            if (current.libraryItem.getTitle().equals(title)) {
-                return current;
-            }
-            current = current.next;
+        filterLookups++;
+        if (!titleFilter.mightContain(title)) {
+            filterRejections++;
+            return null;
+        }
+        LibraryItemNode node = titleIndex.get(title);
+        if (node == null) {
+            filterFalsePositives++;
         }
-        return null;
+        return node;
     }
 
     /**
-     * Decrements the stock of a library item in the list by its title.
-     * @param title The title of the item to decrement the stock for.
+     * Replaces the title filter with one twice the size, holding every distinct title in the list.
      */
-    void decrementStock(String title) {
-        LibraryItemNode current = head;
-        while (current != null) {
-            if (current.libraryItem.getTitle().equals(title)) {
-                current.libraryItem.setStock(current.libraryItem.getStock() - 1);
-                return;
-            }
-            current = current.next;
+    private void rebuildFilter() {
+        int capacity = Math.max(INITIAL_FILTER_CAPACITY, titleFilter.capacity() * 2);
+        TitleFilter rebuilt = fillFilter(capacity);
+        while (rebuilt == null) {
+            capacity *= 2;
+            rebuilt = fillFilter(capacity);
         }
+        titleFilter = rebuilt;
+        filterRebuilds++;
     }
 
     /**
-     * Increments the stock of a library item in the list by its title.
-     * @param title The title of the item to increment the stock for.
+     * Builds a title filter holding every distinct title in the list.
+     * @param capacity The number of titles the new filter is sized for.
+     * @return The filter, or null if it filled up before every title was added.
      */
-    void incrementStock(String title) {
-        LibraryItemNode current = head;
-        while (current != null) {
-            if (current.libraryItem.getTitle().equals(title)) {
-                current.libraryItem.setStock(current.libraryItem.getStock() + 1);
-                return;
+    private TitleFilter fillFilter(int capacity) {
+        TitleFilter filter = new TitleFilter(capacity, falsePositiveRate);
+        for (LibraryItemNode current = head; current != null; current = current.next) {
+            String title = current.libraryItem.getTitle();
+            // The index returns the first node with a title, so each title is added once.
+            if (titleIndex.get(title) == current && !filter.add(title)) {
+                return null;
             }
-            current = current.next;
         }
+        return filter;
+    }
+
+    /**
+     * Displays how well the title filter is working: how many lookups it
+     * answered on its own and how many missing titles it let through.
+     */
+    void displayFilterStats() {
+        long passed = filterLookups - filterRejections;
+        long missing = filterRejections + filterFalsePositives;
+        System.out.println("Title filter: " + titleFilter.size() + " titles, "
+                + titleFilter.getFingerprintBits() + "-bit fingerprints, rebuilt " + filterRebuilds + " times");
+        System.out.println("Lookups: " + filterLookups + ", answered by the filter: " + filterRejections
+                + ", passed to the index: " + passed);
+        System.out.printf("False positives: %d (%.4f%% of missing titles, %.4f%% expected)%n",
+                filterFalsePositives,
+                missing == 0 ? 0.0 : 100.0 * filterFalsePositives / missing,
+                100.0 * titleFilter.expectedFalsePositiveRate());
+    }
+
+    /**
+     * @return The number of title lookups made through findItem.
+     */
+    long getFilterLookups() {
+        return filterLookups;
+    }
+
+    /**
+     * @return The number of lookups the title filter answered as not in the catalog.
+     */
+    long getFilterRejections() {
+        return filterRejections;
+    }
+
+    /**
+     * @return The number of lookups the title filter let through for titles that were not in the catalog.
+     */
+    long getFilterFalsePositives() {
+        return filterFalsePositives;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns one page of the items whose title lies in a range, in alphabetical order.
+     * @param from The first title of the range, or an empty string to start at the beginning.
+     * @param to The last title of the range; titles that start with it are included.
+     *           An empty string runs to the end.
+     * @param after The cursor of the previous page, or null for the first page.
+     * @param pageSize The maximum number of items on the page.
+     * @return The page, with the cursor of the next page if there are more items in the range.
+     */
+    TitlePage listItems(String from, String to, TitleKey after, int pageSize) {
+        return sortedTitles.page(from, to, after, pageSize);
+    }
+
+    /**
+     * Finds a library item node by its catalog id.
+     * @param id The catalog id of the item.
+     * @return The LibraryItemNode if the item is in the list, null otherwise.
+     */
+    LibraryItemNode findItemById(int id) {
+        if (id < 0 || id >= nextId) {
+            return null;
+        }
+        return nodesById[id];
+    }
+
+    /**
+     * Completes a partly typed title.
+     * @param prefix The beginning of the title; case, accents and extra spaces are ignored.
+     * @param limit The maximum number of items to return.
+     * @return The nodes whose title starts with the prefix, in alphabetical order.
+     */
+    List<LibraryItemNode> completeTitle(String prefix, int limit) {
+        return titleTrie.complete(prefix, limit);
+    }
+
+    /**
+     * Searches titles, authors, publishers and issues for keywords.
+     * @param query The keywords; items must match all of them unless they are separated by OR.
+     * @param limit The maximum number of items to return.
+     * @return The matching nodes, best match first.
+     */
+    List<LibraryItemNode> searchItems(String query, int limit) {
+        int[] ids = textIndex.search(query, limit);
+        List<LibraryItemNode> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(nodesById[id]);
+        }
+        return result;
+    }
+
+    /**
+     * Finds all library items by an author.
+     * @param author The author name; case, accents and extra spaces are ignored.
+     * @return The matching nodes in the order they were added.
+     */
+    List<LibraryItemNode> findItemsByAuthor(String author) {
+        return authorIndex.findByAuthor(author);
+    }
+
+    /**
+     * Finds library items whose author name starts with a prefix.
+     * @param prefix The beginning of the author name.
+     * @param limit The maximum number of items to return.
+     * @return The matching nodes, ordered by author name.
+     */
+    List<LibraryItemNode> findItemsByAuthorPrefix(String prefix, int limit) {
+        return authorIndex.findByAuthorPrefix(prefix, limit);
+    }
+
+    /**
+     * Claims a copy of an item in the list and keeps the indexes that track stock up to date.
+     * @param item The LibraryItem to claim a copy of.
+     * @return The copy id of the claimed copy, or -1 if the item is out of stock.
+     */
+    int claimCopy(LibraryItem item) {
+        int copyId = item.claimCopy();
+        if (copyId >= 0) {
+            stockChanged(item);
+        }
+        return copyId;
+    }
+
+    /**
+     * Puts a claimed copy back into stock and keeps the indexes that track stock up to date.
+     * @param item The LibraryItem the copy belongs to.
+     * @param copyId The copy id returned by claimCopy.
+     * @return True if the copy was out and is now back in stock.
+     */
+    boolean returnCopy(LibraryItem item, int copyId) {
+        if (!item.returnCopy(copyId)) {
+            return false;
+        }
+        stockChanged(item);
+        return true;
+    }
+
+    /**
+     * Tells the indexes that track stock that the stock of an item has changed.
+     * @param item The LibraryItem whose stock changed.
+     */
+    private void stockChanged(LibraryItem item) {
+        LibraryItemNode node = findItemById(item.getId());
+        if (node != null && node.libraryItem == item) {
+            seriesIndex.stockChanged(node);
+        }
+    }
+
+    /**
+     * Finds the latest issue of a magazine.
+     * @param title The magazine title; case, accents and extra spaces are ignored.
+     * @return The nodes of the latest issue, or an empty list if there is no magazine with that title.
+     */
+    List<LibraryItemNode> findLatestIssue(String title) {
+        return seriesIndex.latestIssue(title);
+    }
+
+    /**
+     * Finds the issues of a magazine in a range, oldest first.
+     * @param title The magazine title; case, accents and extra spaces are ignored.
+     * @param from The first issue of the range, or an empty string to start at the first issue.
+     * @param to The last issue of the range, or an empty string to run to the latest issue.
+     * @param availableOnly True to list only issues with a copy in stock.
+     * @param limit The maximum number of items to return.
+     * @return The matching nodes in issue order.
+     */
+    List<LibraryItemNode> findIssues(String title, String from, String to, boolean availableOnly, int limit) {
+        return seriesIndex.findIssues(title, from, to, availableOnly, limit);
+    }
+
+    /**
+     * @return The number of items in the list.
+     */
+    int size() {
+        return titleIndex.size();
+    }
+}
@@ -1,12 +1,31 @@
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Abstract class representing a generic library item. 
  * Provides common attributes and methods for books and magazines.
+ * The stock is a lock-free counter: copies are taken with tryReserve and
+ * given back with release, so concurrent borrowers can never overbook an item.
+ *
+ * Once the item is added to a LibraryItemList, each copy in stock gets its own
+ * copy id (its barcode) from a contiguous range, and a bitset records which
+ * copies are on the shelf. claimCopy takes one copy out of stock and clears the
+ * first set bit, and returnCopy sets the bit of that exact copy again.
  */
 abstract class LibraryItem implements Displayable {
+    private static final AtomicIntegerFieldUpdater<LibraryItem> STOCK =
+            AtomicIntegerFieldUpdater.newUpdater(LibraryItem.class, "stock");
+
     private String title;
     private String author;
-    private int stock;
+    private String callNumber;
+    private long shelfKey;
+    private volatile int stock;
+    private int id;
+    private int firstCopyId;
+    private int copyCount;
+    private AtomicLongArray availableCopies;
+    private volatile int freeWordHint;
 
     /**
      * Constructor for LibraryItem.
@@ -18,6 +37,9 @@ abstract class LibraryItem implements Displayable {
         this.title = title;
         this.author = author;
         this.stock = stock;
+        this.id = -1;
+        callNumber = null;
+        shelfKey = CatalogText.shelfKey(author);
     }
 
     /**
@@ -34,6 +56,30 @@ abstract class LibraryItem implements Displayable {
         return author;
     }
 
+    /**
+     * @return The call number that says where the item is shelved. Items without
+     *         one are shelved by author, so their call number is the author.
+     */
+    public String getCallNumber() {
+        return callNumber == null ? author : callNumber;
+    }
+
+    /**
+     * Sets the call number and with it the shelf key.
+     * @param callNumber The call number, or null or blank to shelve the item by author.
+     */
+    public void setCallNumber(String callNumber) {
+        this.callNumber = callNumber == null || callNumber.trim().isEmpty() ? null : callNumber.trim();
+        shelfKey = CatalogText.shelfKey(getCallNumber());
+    }
+
+    /**
+     * @return The shelf key of the call number; sorting by it puts items in shelf order.
+     */
+    public long getShelfKey() {
+        return shelfKey;
+    }
+
     /**
      * @return The number of copies in stock.
      */
@@ -43,12 +89,173 @@ abstract class LibraryItem implements Displayable {
 
     /**
      * Sets the number of copies in stock.
+     * The copies themselves are not changed, so once copy ids are assigned
+     * the stock should only change through claimCopy and returnCopy.
      * @param stock The new stock quantity.
      */
     public void setStock(int stock) {
         this.stock = stock;
     }
 
+    /**
+     * Takes one copy out of stock if there is one.
+     * The stock is updated with compare-and-set and never goes below zero.
+     * @return True if a copy was reserved, false if the item is out of stock.
+     */
+    public boolean tryReserve() {
+        while (true) {
+            int current = stock;
+            if (current <= 0) {
+                return false;
+            }
+            if (STOCK.compareAndSet(this, current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Puts one copy back into stock.
+     */
+    public void release() {
+        STOCK.incrementAndGet(this);
+    }
+
+    /**
+     * Gives every copy in stock a copy id, starting at firstCopyId, and marks them all available.
+     * Called by the catalog when the item is added.
+     * @param firstCopyId The copy id of the first copy.
+     */
+    void assignCopies(int firstCopyId) {
+        this.firstCopyId = firstCopyId;
+        copyCount = Math.max(0, stock);
+        long[] words = new long[(copyCount + 63) >>> 6];
+        for (int i = 0; i < copyCount >>> 6; i++) {
+            words[i] = -1L;
+        }
+        if ((copyCount & 63) != 0) {
+            words[words.length - 1] = (1L << (copyCount & 63)) - 1;
+        }
+        availableCopies = new AtomicLongArray(words);
+        freeWordHint = 0;
+    }
+
+    /**
+     * @return The copy id of the first copy, or 0 if copy ids have not been assigned.
+     */
+    public int getFirstCopyId() {
+        return firstCopyId;
+    }
+
+    /**
+     * @return The number of copies that have copy ids.
+     */
+    public int getCopyCount() {
+        return copyCount;
+    }
+
+    /**
+     * Checks whether a copy is one of this item's copies.
+     * @param copyId The copy id.
+     * @return True if the copy id lies in this item's range.
+     */
+    public boolean ownsCopy(int copyId) {
+        return copyId >= firstCopyId && copyId - firstCopyId < copyCount;
+    }
+
+    /**
+     * Takes one copy out of stock and claims the first available copy id.
+     * The stock is reserved first, so a free bit is known to exist, and the bit
+     * is then cleared with compare-and-set. The scan starts at the first word
+     * that may still have a free bit, so a claim is O(1) amortized.
+     * @return The copy id of the claimed copy, or -1 if the item is out of stock
+     *         or has no copy ids.
+     */
+    public int claimCopy() {
+        if (availableCopies == null || !tryReserve()) {
+            return -1;
+        }
+        int words = availableCopies.length();
+        // Copies returned behind the scan can be missed by one pass, so make two
+        // before deciding the stock and the bitset disagree.
+        for (int pass = 0; pass < 2; pass++) {
+            int start = freeWordHint;
+            for (int n = 0; n < words; n++) {
+                int index = start + n < words ? start + n : start + n - words;
+                long word = availableCopies.get(index);
+                while (word != 0) {
+                    long bit = Long.lowestOneBit(word);
+                    if (availableCopies.compareAndSet(index, word, word & ~bit)) {
+                        if (word == bit) {
+                            freeWordHint = index + 1 < words ? index + 1 : 0;
+                        }
+                        return firstCopyId + (index << 6) + Long.numberOfTrailingZeros(bit);
+                    }
+                    word = availableCopies.get(index);
+                }
+            }
+        }
+        release();
+        return -1;
+    }
+
+    /**
+     * Puts a claimed copy back on the shelf and into stock.
+     * @param copyId The copy id returned by claimCopy.
+     * @return True if the copy was out, false if it is not one of this item's copies or is already in.
+     */
+    public boolean returnCopy(int copyId) {
+        if (availableCopies == null || !ownsCopy(copyId)) {
+            return false;
+        }
+        int offset = copyId - firstCopyId;
+        int index = offset >>> 6;
+        long bit = 1L << (offset & 63);
+        while (true) {
+            long word = availableCopies.get(index);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (availableCopies.compareAndSet(index, word, word | bit)) {
+                break;
+            }
+        }
+        if (index < freeWordHint) {
+            freeWordHint = index;
+        }
+        // The bit is set before the stock goes up, so a reserved copy can always be found.
+        release();
+        return true;
+    }
+
+    /**
+     * Checks whether a copy is on the shelf.
+     * @param copyId The copy id.
+     * @return True if the copy belongs to this item and is not out.
+     */
+    public boolean isCopyAvailable(int copyId) {
+        if (availableCopies == null || !ownsCopy(copyId)) {
+            return false;
+        }
+        int offset = copyId - firstCopyId;
+        return (availableCopies.get(offset >>> 6) & (1L << (offset & 63))) != 0;
+    }
+
+    /**
+     * @return The catalog id of the item, or -1 if it has not been added to a catalog.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Sets the catalog id. Called by the catalog when the item is added.
+     * @param id The catalog id of the item.
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+
     /**
      * Abstract method to display information about the specific library item.
      */
@@ -16,6 +16,13 @@ class Magazine extends LibraryItem {
         this.issue = issue;
     }
 
+    /**
+     * @return The issue number or date of the magazine.
+     */
+    public String getIssue() {
+        return issue;
+    }
+
     /**
      * Displays the magazine's information, including title, author, stock, and issue.
      */
@@ -0,0 +1,42 @@
+/**
+ * What a ReturnsInbox does with a returned item when it is full.
+ * BLOCK makes the returning thread wait until the reshelving step takes
+ * items out, REJECT turns the item away at once, and SPILL writes it to a
+ * file on disk and reads it back in when there is room again.
+ */
+class OverflowPolicy {
+    static final OverflowPolicy BLOCK = new OverflowPolicy("Block");
+    static final OverflowPolicy REJECT = new OverflowPolicy("Reject");
+    static final OverflowPolicy SPILL = new OverflowPolicy("Spill");
+
+    private final String name;
+
+    /**
+     * Constructor for OverflowPolicy.
+     * @param name The name of the policy.
+     */
+    private OverflowPolicy(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Finds a policy by name, ignoring case.
+     * @param name The name of the policy, e.g. "spill".
+     * @return The policy, or null if there is no policy with that name.
+     */
+    static OverflowPolicy fromName(String name) {
+        for (OverflowPolicy policy : new OverflowPolicy[] {BLOCK, REJECT, SPILL}) {
+            if (policy.name.equalsIgnoreCase(name.trim())) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The name of the policy.
+     */
+    String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,205 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One cart load of returned items, in the order they are passed on a walk
+ * along the shelves.
+ */
+class PickList {
+    final LibraryItem[] items;
+    final long[] shelfKeys;
+
+    /**
+     * Constructor for PickList.
+     * @param items The items, in walk order.
+     * @param shelfKeys The shelf keys of the items.
+     */
+    PickList(LibraryItem[] items, long[] shelfKeys) {
+        this.items = items;
+        this.shelfKeys = shelfKeys;
+    }
+
+    /**
+     * @return The number of items on the cart.
+     */
+    int size() {
+        return items.length;
+    }
+
+    /**
+     * Displays the items in walk order, with a heading for every section of
+     * the shelves the walk enters.
+     * @param number The number of the cart, shown in the heading.
+     */
+    void display(int number) {
+        System.out.println("Cart " + number + " (" + items.length + " items, "
+                + items[0].getCallNumber() + " to " + items[items.length - 1].getCallNumber() + "):");
+        long section = -1;
+        for (int i = 0; i < items.length; i++) {
+            long itemSection = ReshelvingPlanner.sectionOf(shelfKeys[i]);
+            if (itemSection != section) {
+                section = itemSection;
+                System.out.println("  Section " + CatalogText.shelfKeyPrefix(shelfKeys[i], ReshelvingPlanner.SECTION_CHARS) + ":");
+            }
+            System.out.println("    " + items[i].getCallNumber() + " - " + items[i].getTitle());
+        }
+    }
+}
+
+/**
+ * Plans the reshelving of returned items.
+ *
+ * Each batch drains up to batchSize items from the ReturnsInbox, sorts them
+ * by shelf key with an LSD radix sort, 16 bits per pass, and cuts the sorted
+ * batch into pick lists of at most cartSize items. Passes on which every key
+ * has the same digit are skipped, and the arrays are allocated once and
+ * reused, so planning is linear in the batch size. A pick list is a cart
+ * load that is shelved in one walk; the items on it are grouped by section,
+ * the first SECTION_CHARS codes of the shelf key, e.g. QA for QA76.73.
+ */
+class ReshelvingPlanner {
+    static final int SECTION_CHARS = 2;
+    private static final int RADIX_BITS = 16;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int KEY_BITS = CatalogText.SHELF_KEY_CHARS * CatalogText.SHELF_KEY_BITS;
+
+    private final ReturnsInbox inbox;
+    private final int batchSize;
+    private final int cartSize;
+    private final List<LibraryItem> drained;
+    private long[] keys;
+    private LibraryItem[] items;
+    private long[] keyScratch;
+    private LibraryItem[] itemScratch;
+    private final int[] counts;
+    private long lastPlanNanos;
+
+    /**
+     * Constructor for ReshelvingPlanner.
+     * @param inbox The inbox returned items are drained from.
+     * @param batchSize The maximum number of items planned in one batch.
+     * @param cartSize The maximum number of items on one pick list.
+     */
+    ReshelvingPlanner(ReturnsInbox inbox, int batchSize, int cartSize) {
+        if (batchSize < 1 || cartSize < 1) {
+            throw new IllegalArgumentException("Batch and cart sizes must be positive");
+        }
+        this.inbox = inbox;
+        this.batchSize = batchSize;
+        this.cartSize = cartSize;
+        drained = new ArrayList<>();
+        keys = new long[0];
+        items = new LibraryItem[0];
+        keyScratch = keys;
+        itemScratch = items;
+        counts = new int[RADIX];
+        lastPlanNanos = 0;
+    }
+
+    /**
+     * Drains the next batch of returned items and plans it.
+     * @return The pick lists in walk order, or an empty list if nothing was waiting.
+     */
+    List<PickList> planBatch() {
+        drained.clear();
+        inbox.drainTo(drained, batchSize);
+        long start = System.nanoTime();
+        List<PickList> pickLists = plan(drained);
+        lastPlanNanos = System.nanoTime() - start;
+        drained.clear();
+        return pickLists;
+    }
+
+    /**
+     * Sorts items into shelf order and cuts them into pick lists.
+     * @param batch The items to plan.
+     * @return The pick lists in walk order.
+     */
+    List<PickList> plan(List<LibraryItem> batch) {
+        int count = batch.size();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            items[i] = batch.get(i);
+            keys[i] = items[i].getShelfKey();
+        }
+        sortByShelf(count);
+
+        List<PickList> pickLists = new ArrayList<>((count + cartSize - 1) / cartSize);
+        for (int from = 0; from < count; from += cartSize) {
+            int to = Math.min(count, from + cartSize);
+            pickLists.add(new PickList(Arrays.copyOfRange(items, from, to), Arrays.copyOfRange(keys, from, to)));
+        }
+        Arrays.fill(items, 0, count, null);
+        return pickLists;
+    }
+
+    /**
+     * Grows the sort arrays so they hold at least count items.
+     * @param count The number of items to sort.
+     */
+    private void ensureCapacity(int count) {
+        if (keys.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, keys.length * 2);
+        keys = new long[capacity];
+        items = new LibraryItem[capacity];
+        keyScratch = new long[capacity];
+        itemScratch = new LibraryItem[capacity];
+    }
+
+    /**
+     * Sorts the first count keys, and the items with them, with a stable LSD
+     * radix sort, so items with the same shelf key keep the order they were
+     * returned in.
+     * @param count The number of items to sort.
+     */
+    private void sortByShelf(int count) {
+        if (count < 2) {
+            return;
+        }
+        for (int shift = 0; shift < KEY_BITS; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++) {
+                counts[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if (counts[(int) (keys[0] >>> shift) & (RADIX - 1)] == count) {
+                continue;
+            }
+            int position = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int digitCount = counts[digit];
+                counts[digit] = position;
+                position += digitCount;
+            }
+            for (int i = 0; i < count; i++) {
+                int target = counts[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+                keyScratch[target] = keys[i];
+                itemScratch[target] = items[i];
+            }
+            long[] sortedKeys = keyScratch;
+            keyScratch = keys;
+            keys = sortedKeys;
+            LibraryItem[] sortedItems = itemScratch;
+            itemScratch = items;
+            items = sortedItems;
+        }
+        Arrays.fill(itemScratch, 0, count, null);
+    }
+
+    /**
+     * @param shelfKey A shelf key.
+     * @return The section of the shelves the key falls in.
+     */
+    static long sectionOf(long shelfKey) {
+        return shelfKey >>> KEY_BITS - SECTION_CHARS * CatalogText.SHELF_KEY_BITS;
+    }
+
+    /**
+     * @return The time the last batch took to plan, in nanoseconds, not counting the drain.
+     */
+    long getLastPlanNanos() {
+        return lastPlanNanos;
+    }
+}
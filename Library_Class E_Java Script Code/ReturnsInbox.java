@@ -0,0 +1,426 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * Inbox of returned library items waiting to be reshelved.
+ *
+ * The items are kept in a ring buffer whose capacity is rounded up to a power
+ * of two, so a position in the ring is found with a mask. The ring is
+ * allocated once, so pushing and taking items allocate nothing, and items are
+ * taken in the order they were returned, one at a time or in batches with
+ * drainTo. When the ring is full the OverflowPolicy decides what happens to a
+ * returned item: BLOCK waits for room, REJECT turns the item away, and SPILL
+ * appends the catalog id of the item to a file. Spilled items are read back
+ * into the ring, oldest first, as room is made; while any are on disk new
+ * items are spilled too, so the order is kept.
+ *
+ * All methods are synchronized. A thread that blocks on a full inbox only
+ * holds the lock of the inbox while it waits, so the thread taking items out
+ * must not need any lock the returning thread holds. Closing the inbox
+ * releases the threads that are blocked, and offer never blocks, so shutting
+ * down does not wait for a reshelving step that will not come.
+ */
+class ReturnsInbox {
+    private static final int ID_BYTES = 4;
+    private static final int SPILL_READ_ITEMS = 1024;
+
+    private final LibraryItem[] ring;
+    private final int mask;
+    private long head;
+    private long tail;
+    private final OverflowPolicy policy;
+    private int blockedThreads;
+    private long rejected;
+    private boolean closed;
+
+    private final File spillFile;
+    private final LibraryItemList catalog;
+    private RandomAccessFile spill;
+    private long spillReadPosition;
+    private long spillWritePosition;
+    private long spilledTotal;
+    private final byte[] idBytes;
+    private final byte[] spillBuffer;
+
+    /**
+     * Constructor for an inbox that blocks or rejects returns when it is full.
+     * @param capacity The minimum number of items the ring holds; rounded up to a power of two.
+     * @param policy BLOCK or REJECT.
+     */
+    ReturnsInbox(int capacity, OverflowPolicy policy) {
+        this(capacity, policy, null, null);
+        if (policy == OverflowPolicy.SPILL) {
+            throw new IllegalArgumentException("A spilling inbox needs a spill file");
+        }
+    }
+
+    /**
+     * Constructor for an inbox that spills returns to disk when it is full.
+     * @param capacity The minimum number of items the ring holds; rounded up to a power of two.
+     * @param spillFile The file spilled items are written to. It is created when needed and overwritten.
+     * @param catalog The catalog used to find spilled items again by their id.
+     */
+    ReturnsInbox(int capacity, File spillFile, LibraryItemList catalog) {
+        this(capacity, OverflowPolicy.SPILL, spillFile, catalog);
+    }
+
+    /**
+     * Constructor for ReturnsInbox.
+     * @param capacity The minimum number of items the ring holds.
+     * @param policy What to do with a returned item when the ring is full.
+     * @param spillFile The spill file, or null if the inbox does not spill.
+     * @param catalog The catalog spilled items are found in, or null if the inbox does not spill.
+     */
+    private ReturnsInbox(int capacity, OverflowPolicy policy, File spillFile, LibraryItemList catalog) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        ring = new LibraryItem[size];
+        mask = size - 1;
+        head = 0;
+        tail = 0;
+        this.policy = policy;
+        blockedThreads = 0;
+        rejected = 0;
+        closed = false;
+        this.spillFile = spillFile;
+        this.catalog = catalog;
+        spill = null;
+        spillReadPosition = 0;
+        spillWritePosition = 0;
+        spilledTotal = 0;
+        idBytes = new byte[ID_BYTES];
+        spillBuffer = spillFile == null ? null : new byte[SPILL_READ_ITEMS * ID_BYTES];
+    }
+
+    /**
+     * Builds an inbox configured by the system properties library.returnsCapacity
+     * (default 1024) and library.returnsOverflow ("block", "reject" or "spill",
+     * default spill). Spilled items go to library-returns.spill in the temporary
+     * directory. Invalid values are reported and ignored.
+     * @param catalog The catalog spilled items are found in.
+     * @return The configured inbox.
+     */
+    static ReturnsInbox fromSystemProperties(LibraryItemList catalog) {
+        int capacity = 1024;
+        String value = System.getProperty("library.returnsCapacity");
+        if (value != null) {
+            try {
+                int configured = Integer.parseInt(value.trim());
+                if (configured > 0 && configured <= 1 << 30) {
+                    capacity = configured;
+                } else {
+                    System.out.println("Error: Invalid returns capacity " + value + ", using " + capacity + ".");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Error: Invalid returns capacity " + value + ", using " + capacity + ".");
+            }
+        }
+        OverflowPolicy policy = OverflowPolicy.SPILL;
+        value = System.getProperty("library.returnsOverflow");
+        if (value != null) {
+            OverflowPolicy configured = OverflowPolicy.fromName(value);
+            if (configured == null) {
+                System.out.println("Error: Unknown returns overflow policy " + value + ", using Spill.");
+            } else {
+                policy = configured;
+            }
+        }
+        if (policy == OverflowPolicy.SPILL) {
+            return new ReturnsInbox(capacity, new File(System.getProperty("java.io.tmpdir"), "library-returns.spill"),
+                    catalog);
+        }
+        return new ReturnsInbox(capacity, policy);
+    }
+
+    /**
+     * Adds a returned item to the inbox. When the ring is full the item is
+     * handled by the overflow policy of the inbox.
+     * @param item The returned LibraryItem.
+     * @return True if the item was taken in, false if it was rejected, could not
+     *         be spilled, or the inbox was closed or the thread interrupted while blocked.
+     */
+    synchronized boolean push(LibraryItem item) {
+        return add(item, true);
+    }
+
+    /**
+     * Adds a returned item to the inbox without waiting. Like push, except that
+     * when the ring of a BLOCK inbox is full the item is turned away at once.
+     * @param item The returned LibraryItem.
+     * @return True if the item was taken in, false if it was turned away.
+     */
+    synchronized boolean offer(LibraryItem item) {
+        return add(item, false);
+    }
+
+    /**
+     * Adds a returned item to the inbox, or hands it to the overflow policy.
+     * @param item The returned LibraryItem.
+     * @param mayBlock False to turn the item away rather than wait for room.
+     * @return True if the item was taken in.
+     */
+    private boolean add(LibraryItem item, boolean mayBlock) {
+        if (closed) {
+            rejected++;
+            return false;
+        }
+        if (spilledCount() == 0 && tail - head < ring.length) {
+            ring[(int) tail & mask] = item;
+            tail++;
+            return true;
+        }
+        if (policy == OverflowPolicy.SPILL) {
+            return spill(item);
+        }
+        if (policy == OverflowPolicy.BLOCK && mayBlock) {
+            blockedThreads++;
+            try {
+                while (!closed && tail - head == ring.length) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected++;
+                return false;
+            } finally {
+                blockedThreads--;
+            }
+            if (closed) {
+                rejected++;
+                return false;
+            }
+            ring[(int) tail & mask] = item;
+            tail++;
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    /**
+     * Removes and returns the item returned the longest time ago.
+     * @return The LibraryItem, or null if the inbox is empty.
+     */
+    synchronized LibraryItem poll() {
+        if (head == tail) {
+            return null;
+        }
+        int index = (int) head & mask;
+        LibraryItem item = ring[index];
+        ring[index] = null;
+        head++;
+        madeRoom();
+        return item;
+    }
+
+    /**
+     * Moves up to maxItems items into a list, oldest first, for reshelving in one batch.
+     * @param batch The list the items are added to.
+     * @param maxItems The maximum number of items to move.
+     * @return The number of items moved.
+     */
+    synchronized int drainTo(List<LibraryItem> batch, int maxItems) {
+        int count = 0;
+        while (count < maxItems && head != tail) {
+            int index = (int) head & mask;
+            batch.add(ring[index]);
+            ring[index] = null;
+            head++;
+            count++;
+            if (head == tail && spilledCount() > 0) {
+                unspill();
+            }
+        }
+        if (count > 0) {
+            madeRoom();
+        }
+        return count;
+    }
+
+    /**
+     * Called after items were taken out of the ring. Reads spilled items
+     * back in and wakes the threads waiting for room.
+     */
+    private void madeRoom() {
+        if (spilledCount() > 0) {
+            unspill();
+        }
+        if (blockedThreads > 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Appends the catalog id of an item to the spill file.
+     * @param item The LibraryItem to spill.
+     * @return True if the item was spilled, false if the file could not be written.
+     */
+    private boolean spill(LibraryItem item) {
+        int id = item.getId();
+        idBytes[0] = (byte) (id >>> 24);
+        idBytes[1] = (byte) (id >>> 16);
+        idBytes[2] = (byte) (id >>> 8);
+        idBytes[3] = (byte) id;
+        try {
+            if (spill == null) {
+                spill = new RandomAccessFile(spillFile, "rw");
+                spill.setLength(0);
+            }
+            spill.seek(spillWritePosition);
+            spill.write(idBytes);
+        } catch (IOException e) {
+            System.out.println("Error: Cannot spill returned item to " + spillFile + ": " + e.getMessage());
+            rejected++;
+            return false;
+        }
+        spillWritePosition += ID_BYTES;
+        spilledTotal++;
+        return true;
+    }
+
+    /**
+     * Reads spilled items back into the free part of the ring, oldest first.
+     * Items removed from the catalog since they were spilled are dropped.
+     * Once the file has been read to the end it is emptied.
+     */
+    private void unspill() {
+        try {
+            while (spilledCount() > 0 && tail - head < ring.length) {
+                int count = (int) Math.min(Math.min(spilledCount(), ring.length - (tail - head)), SPILL_READ_ITEMS);
+                spill.seek(spillReadPosition);
+                spill.readFully(spillBuffer, 0, count * ID_BYTES);
+                spillReadPosition += count * ID_BYTES;
+                for (int i = 0; i < count * ID_BYTES; i += ID_BYTES) {
+                    int id = (spillBuffer[i] & 0xff) << 24 | (spillBuffer[i + 1] & 0xff) << 16
+                            | (spillBuffer[i + 2] & 0xff) << 8 | (spillBuffer[i + 3] & 0xff);
+                    LibraryItemNode node = catalog.findItemById(id);
+                    if (node != null) {
+                        ring[(int) tail & mask] = node.libraryItem;
+                        tail++;
+                    }
+                }
+            }
+            if (spilledCount() == 0) {
+                spill.setLength(0);
+                spillReadPosition = 0;
+                spillWritePosition = 0;
+            }
+        } catch (IOException e) {
+            System.out.println("Error: Cannot read spilled returns from " + spillFile + ": " + e.getMessage()
+                    + ". " + spilledCount() + " returned items were lost.");
+            rejected += spilledCount();
+            discardSpill();
+        }
+    }
+
+    /**
+     * Empties the spill file after it could not be read, so none of the ids
+     * left in it can be read back later. If the file cannot be truncated it
+     * is closed instead, and the next spill reopens and truncates it.
+     */
+    private void discardSpill() {
+        spillReadPosition = 0;
+        spillWritePosition = 0;
+        try {
+            spill.setLength(0);
+            return;
+        } catch (IOException e) {
+            System.out.println("Error: Cannot empty " + spillFile + ": " + e.getMessage());
+        }
+        try {
+            spill.close();
+        } catch (IOException e) {
+            System.out.println("Error: Cannot close " + spillFile + ": " + e.getMessage());
+        }
+        spill = null;
+    }
+
+    /**
+     * Closes the inbox and deletes the spill file. Threads blocked on a full
+     * inbox return at once, and items pushed from now on are turned away.
+     * Items still spilled are lost.
+     */
+    synchronized void close() {
+        closed = true;
+        if (blockedThreads > 0) {
+            notifyAll();
+        }
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.close();
+        } catch (IOException e) {
+            System.out.println("Error: Cannot close " + spillFile + ": " + e.getMessage());
+        }
+        spill = null;
+        spillReadPosition = 0;
+        spillWritePosition = 0;
+        if (!spillFile.delete()) {
+            System.out.println("Error: Cannot delete " + spillFile + ".");
+        }
+    }
+
+    /**
+     * @return True if there are no items in the ring or on disk.
+     */
+    synchronized boolean isEmpty() {
+        return head == tail && spilledCount() == 0;
+    }
+
+    /**
+     * @return True if the ring is full, so the next return is handled by the overflow policy.
+     */
+    synchronized boolean isFull() {
+        return tail - head == ring.length;
+    }
+
+    /**
+     * @return The number of items waiting in the ring and on disk.
+     */
+    synchronized long size() {
+        return tail - head + spilledCount();
+    }
+
+    /**
+     * @return The number of items the ring holds.
+     */
+    int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * @return The overflow policy of the inbox.
+     */
+    OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return The number of items waiting on disk.
+     */
+    private long spilledCount() {
+        return (spillWritePosition - spillReadPosition) / ID_BYTES;
+    }
+
+    /**
+     * @return The number of items that were ever spilled to disk.
+     */
+    synchronized long spilledTotal() {
+        return spilledTotal;
+    }
+
+    /**
+     * @return The number of returned items that were turned away or lost.
+     */
+    synchronized long rejectedCount() {
+        return rejected;
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ * Cuckoo filter over catalog titles that answers "definitely not in the
+ * catalog" without touching the TitleIndex.
+ *
+ * Each title is reduced to a short fingerprint stored in one of two buckets
+ * of four slots. The second bucket is the first one XOR a hash of the
+ * fingerprint, so an entry can be moved between its buckets knowing only the
+ * fingerprint, and titles can be removed again. The fingerprint width is
+ * chosen from the requested false positive rate. When an insert cannot find
+ * a free slot the filter reports that it is full and the owner rebuilds it
+ * with more room; the fingerprint that was left over is kept aside until
+ * then, so the filter never forgets a title.
+ */
+class TitleFilter {
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double MAX_LOAD = 0.95;
+
+    private final short[] slots;
+    private final int bucketMask;
+    private final int fingerprintBits;
+    private final int fingerprintMask;
+    private int count;
+    private int victimBucket;
+    private int victimFingerprint;
+    private long kickSeed;
+
+    /**
+     * Constructor for TitleFilter.
+     * @param expectedTitles The number of distinct titles the filter should hold.
+     * @param falsePositiveRate The highest acceptable rate of false "maybe" answers,
+     *                          between 0 and 1. Rates below about 0.0001 are rounded up.
+     */
+    TitleFilter(int expectedTitles, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        // A lookup compares against up to 8 fingerprints, so each bit halves the error of 8 / 2^bits.
+        int bits = (int) Math.ceil(Math.log(2.0 * SLOTS_PER_BUCKET / falsePositiveRate) / Math.log(2));
+        fingerprintBits = Math.max(4, Math.min(16, bits));
+        fingerprintMask = (1 << fingerprintBits) - 1;
+
+        long wanted = (long) Math.ceil(Math.max(1, expectedTitles) / (SLOTS_PER_BUCKET * MAX_LOAD));
+        int buckets = 1;
+        while (buckets < wanted && buckets < (1 << 28)) {
+            buckets <<= 1;
+        }
+        slots = new short[buckets * SLOTS_PER_BUCKET];
+        bucketMask = buckets - 1;
+        count = 0;
+        victimFingerprint = 0;
+        kickSeed = 0x2545F4914F6CDD1DL;
+    }
+
+    /**
+     * Checks whether a title may be in the filter.
+     * @param title The title to check.
+     * @return False if the title was definitely never added, true if it may have been.
+     */
+    boolean mightContain(String title) {
+        long hash = hash(title);
+        int fingerprint = fingerprint(hash);
+        int first = (int) hash & bucketMask;
+        int second = alternateBucket(first, fingerprint);
+        return bucketContains(first, fingerprint)
+                || bucketContains(second, fingerprint)
+                || (victimFingerprint == fingerprint && (victimBucket == first || victimBucket == second));
+    }
+
+    /**
+     * Adds a title to the filter.
+     * @param title The title to add.
+     * @return True if the title was stored, false if the filter is full and must be rebuilt.
+     *         The title is still reported by mightContain after the first false return,
+     *         but a full filter stores nothing more until it is rebuilt.
+     */
+    boolean add(String title) {
+        if (victimFingerprint != 0) {
+            return false;
+        }
+        long hash = hash(title);
+        int fingerprint = fingerprint(hash);
+        int bucket = (int) hash & bucketMask;
+        if (insertIntoBucket(bucket, fingerprint)) {
+            count++;
+            return true;
+        }
+        bucket = alternateBucket(bucket, fingerprint);
+        if (insertIntoBucket(bucket, fingerprint)) {
+            count++;
+            return true;
+        }
+        // Both buckets are full: evict a random entry to its other bucket and repeat.
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int slot = bucket * SLOTS_PER_BUCKET + nextKickSlot();
+            int evicted = slots[slot] & 0xFFFF;
+            slots[slot] = (short) fingerprint;
+            fingerprint = evicted;
+            bucket = alternateBucket(bucket, fingerprint);
+            if (insertIntoBucket(bucket, fingerprint)) {
+                count++;
+                return true;
+            }
+        }
+        victimBucket = bucket;
+        victimFingerprint = fingerprint;
+        count++;
+        return false;
+    }
+
+    /**
+     * Removes a title that was added before.
+     * Removing a title that was never added may remove another title that shares its fingerprint.
+     * @param title The title to remove.
+     * @return True if a matching fingerprint was found and removed.
+     */
+    boolean remove(String title) {
+        long hash = hash(title);
+        int fingerprint = fingerprint(hash);
+        int first = (int) hash & bucketMask;
+        int second = alternateBucket(first, fingerprint);
+        if (removeFromBucket(first, fingerprint) || removeFromBucket(second, fingerprint)) {
+            count--;
+            // A slot may have opened up for the fingerprint that was kept aside.
+            if (victimFingerprint != 0
+                    && (insertIntoBucket(victimBucket, victimFingerprint)
+                        || insertIntoBucket(alternateBucket(victimBucket, victimFingerprint), victimFingerprint))) {
+                victimFingerprint = 0;
+            }
+            return true;
+        }
+        if (victimFingerprint == fingerprint && (victimBucket == first || victimBucket == second)) {
+            victimFingerprint = 0;
+            count--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return True if an insert has failed and the filter should be rebuilt with more room.
+     */
+    boolean isFull() {
+        return victimFingerprint != 0;
+    }
+
+    /**
+     * @return The number of titles in the filter.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return The number of titles the filter can hold at its target load.
+     */
+    int capacity() {
+        return (int) (slots.length * MAX_LOAD);
+    }
+
+    /**
+     * @return The number of bits stored per title.
+     */
+    int getFingerprintBits() {
+        return fingerprintBits;
+    }
+
+    /**
+     * @return The false positive rate expected at the current load.
+     */
+    double expectedFalsePositiveRate() {
+        double load = (double) count / slots.length;
+        return 1 - Math.pow(1 - 1.0 / (1 << fingerprintBits), 2 * SLOTS_PER_BUCKET * load);
+    }
+
+    /**
+     * Checks whether a bucket holds a fingerprint.
+     * @param bucket The bucket number.
+     * @param fingerprint The fingerprint to look for.
+     * @return True if one of the slots of the bucket holds the fingerprint.
+     */
+    private boolean bucketContains(int bucket, int fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        short f = (short) fingerprint;
+        return slots[base] == f || slots[base + 1] == f || slots[base + 2] == f || slots[base + 3] == f;
+    }
+
+    /**
+     * Stores a fingerprint in the first empty slot of a bucket.
+     * @param bucket The bucket number.
+     * @param fingerprint The fingerprint to store.
+     * @return True if the bucket had an empty slot.
+     */
+    private boolean insertIntoBucket(int bucket, int fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        for (int i = base; i < base + SLOTS_PER_BUCKET; i++) {
+            if (slots[i] == 0) {
+                slots[i] = (short) fingerprint;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clears one slot of a bucket that holds a fingerprint.
+     * @param bucket The bucket number.
+     * @param fingerprint The fingerprint to remove.
+     * @return True if the fingerprint was found.
+     */
+    private boolean removeFromBucket(int bucket, int fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        short f = (short) fingerprint;
+        for (int i = base; i < base + SLOTS_PER_BUCKET; i++) {
+            if (slots[i] == f) {
+                slots[i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the other bucket a fingerprint may live in.
+     * Applying it twice gives back the original bucket.
+     * @param bucket One of the two buckets.
+     * @param fingerprint The fingerprint.
+     * @return The other bucket.
+     */
+    private int alternateBucket(int bucket, int fingerprint) {
+        return (bucket ^ (fingerprint * 0x5BD1E995)) & bucketMask;
+    }
+
+    /**
+     * Takes a fingerprint from the high bits of a hash, avoiding 0, which marks an empty slot.
+     * @param hash The hash of the title.
+     * @return A fingerprint between 1 and the fingerprint mask.
+     */
+    private int fingerprint(long hash) {
+        int fingerprint = (int) (hash >>> 40) & fingerprintMask;
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /**
+     * @return A pseudo-random slot position within a bucket for the eviction loop.
+     */
+    private int nextKickSlot() {
+        kickSeed ^= kickSeed << 13;
+        kickSeed ^= kickSeed >>> 7;
+        kickSeed ^= kickSeed << 17;
+        return (int) (kickSeed >>> 62);
+    }
+
+    /**
+     * Spreads the hash code of a title over 64 bits. The hash code is cached by
+     * the String, so a title that was looked up before costs no hashing at all.
+     * Titles with equal hash codes share a fingerprint, which adds about one
+     * false positive per 2^32 titles held to the fingerprint error.
+     * @param title The title to hash.
+     * @return The hash.
+     */
+    private static long hash(String title) {
+        long h = ((long) title.hashCode() << 32) ^ title.length();
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Entry in a bucket chain of the TitleIndex.
+ * There is one entry per distinct title, holding the first and last of the
+ * nodes with that title; the nodes are chained through nextSameTitle.
+ */
+class TitleIndexEntry {
+    String title;
+    int hash;
+    LibraryItemNode first;
+    LibraryItemNode last;
+    TitleIndexEntry next;
+
+    /**
+     * Constructor for TitleIndexEntry.
+     * @param title The title the nodes are indexed under.
+     * @param hash The spread hash code of the title.
+     * @param node The first LibraryItemNode with the title.
+     */
+    TitleIndexEntry(String title, int hash, LibraryItemNode node) {
+        this.title = title;
+        this.hash = hash;
+        first = node;
+        last = node;
+        next = null;
+    }
+}
+
+/**
+ * Hash index from item title to the LibraryItemNodes holding it.
+ * Uses separate chaining with one entry per distinct title, and the nodes
+ * that share a title hang off their entry in the order they were added, so a
+ * lookup returns the node that was added first, the same node a scan from
+ * the head of the list would find. Adding and removing a node walk only the
+ * distinct titles in its bucket, never the other nodes with the same title.
+ */
+class TitleIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private TitleIndexEntry[] buckets;
+    private int titles;
+    private int size;
+
+    /**
+     * Constructor for TitleIndex.
+     * Initializes the index as empty.
+     */
+    TitleIndex() {
+        buckets = new TitleIndexEntry[INITIAL_CAPACITY];
+        titles = 0;
+        size = 0;
+    }
+
+    /**
+     * Spreads the higher bits of the title's hash code into the lower bits,
+     * since the bucket is chosen by masking with the table size.
+     * @param title The title to hash.
+     * @return The spread hash code.
+     */
+    private static int hash(String title) {
+        int h = title.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Finds the entry of a title.
+     * @param title The title to search for.
+     * @param h The spread hash code of the title.
+     * @return The TitleIndexEntry, or null if the title is not indexed.
+     */
+    private TitleIndexEntry find(String title, int h) {
+        TitleIndexEntry current = buckets[h & (buckets.length - 1)];
+        while (current != null) {
+            if (current.hash == h && current.title.equals(title)) {
+                return current;
+            }
+            current = current.next;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the first node indexed under a title.
+     * @param title The title to search for.
+     * @return The LibraryItemNode if the title is indexed, null otherwise.
+     */
+    LibraryItemNode get(String title) {
+        if (title == null) {
+            return null;
+        }
+        TitleIndexEntry entry = find(title, hash(title));
+        return entry == null ? null : entry.first;
+    }
+
+    /**
+     * Adds a node to the index under the title of its library item,
+     * after the nodes already indexed under that title.
+     * @param node The LibraryItemNode to index.
+     */
+    void put(LibraryItemNode node) {
+        String title = node.libraryItem.getTitle();
+        int h = hash(title);
+        TitleIndexEntry entry = find(title, h);
+        node.nextSameTitle = null;
+        size++;
+        if (entry != null) {
+            node.prevSameTitle = entry.last;
+            entry.last.nextSameTitle = node;
+            entry.last = node;
+            return;
+        }
+        node.prevSameTitle = null;
+        int index = h & (buckets.length - 1);
+        TitleIndexEntry newEntry = new TitleIndexEntry(title, h, node);
+        newEntry.next = buckets[index];
+        buckets[index] = newEntry;
+        titles++;
+        if (titles > buckets.length - (buckets.length >>> 2)) {
+            resize();
+        }
+    }
+
+    /**
+     * Removes a specific node from the index.
+     * Other nodes sharing the same title stay indexed.
+     * @param node The LibraryItemNode to remove.
+     */
+    void remove(LibraryItemNode node) {
+        String title = node.libraryItem.getTitle();
+        int h = hash(title);
+        TitleIndexEntry entry = find(title, h);
+        if (entry == null || (node.prevSameTitle == null && entry.first != node)) {
+            return;
+        }
+        if (node.prevSameTitle == null) {
+            entry.first = node.nextSameTitle;
+        } else {
+            node.prevSameTitle.nextSameTitle = node.nextSameTitle;
+        }
+        if (node.nextSameTitle == null) {
+            entry.last = node.prevSameTitle;
+        } else {
+            node.nextSameTitle.prevSameTitle = node.prevSameTitle;
+        }
+        node.nextSameTitle = null;
+        node.prevSameTitle = null;
+        size--;
+        if (entry.first == null) {
+            unlinkEntry(entry);
+        }
+    }
+
+    /**
+     * Removes the entry of a title that has no nodes left from its bucket chain.
+     * @param entry The TitleIndexEntry to remove.
+     */
+    private void unlinkEntry(TitleIndexEntry entry) {
+        int index = entry.hash & (buckets.length - 1);
+        if (buckets[index] == entry) {
+            buckets[index] = entry.next;
+        } else {
+            TitleIndexEntry previous = buckets[index];
+            while (previous.next != entry) {
+                previous = previous.next;
+            }
+            previous.next = entry.next;
+        }
+        entry.next = null;
+        titles--;
+    }
+
+    /**
+     * @return The number of nodes in the index.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Doubles the number of buckets and redistributes the entries.
+     * The nodes stay on their entries, so nodes that share a title keep their order.
+     */
+    private void resize() {
+        TitleIndexEntry[] oldBuckets = buckets;
+        TitleIndexEntry[] newBuckets = new TitleIndexEntry[oldBuckets.length * 2];
+        for (TitleIndexEntry bucket : oldBuckets) {
+            TitleIndexEntry current = bucket;
+            while (current != null) {
+                TitleIndexEntry next = current.next;
+                int index = current.hash & (newBuckets.length - 1);
+                current.next = newBuckets[index];
+                newBuckets[index] = current;
+                current = next;
+            }
+        }
+        buckets = newBuckets;
+    }
+}
@@ -0,0 +1,244 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Node of a TitleTrie. The label is the part of the key on the edge from the
+ * parent, and children are kept sorted by the first character of their label.
+ */
+class TitleTrieNode {
+    String label;
+    TitleTrieNode[] children;
+    int childCount;
+    List<LibraryItemNode> items;
+
+    /**
+     * Constructor for TitleTrieNode.
+     * @param label The edge label from the parent node.
+     */
+    TitleTrieNode(String label) {
+        this.label = label;
+        children = null;
+        childCount = 0;
+        items = null;
+    }
+
+    /**
+     * Finds the position of the child whose label starts with a character.
+     * @param c The first character of the label.
+     * @return The index of the child, or (-(insertion point) - 1) if there is none.
+     */
+    int findChild(char c) {
+        int low = 0;
+        int high = childCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = children[mid].label.charAt(0);
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Inserts a child at a position, keeping the children sorted.
+     * @param index The insertion point.
+     * @param child The child node.
+     */
+    void insertChild(int index, TitleTrieNode child) {
+        if (children == null) {
+            children = new TitleTrieNode[2];
+        } else if (childCount == children.length) {
+            children = Arrays.copyOf(children, childCount * 2);
+        }
+        System.arraycopy(children, index, children, index + 1, childCount - index);
+        children[index] = child;
+        childCount++;
+    }
+
+    /**
+     * Removes the child at a position.
+     * @param index The index of the child.
+     */
+    void removeChild(int index) {
+        System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+        children[--childCount] = null;
+    }
+}
+
+/**
+ * Radix trie over normalized titles, used to complete a partly typed title.
+ * Chains of single-child nodes are merged into one edge, so the trie has at
+ * most two nodes per distinct title. Completions come back in alphabetical
+ * order of the normalized title, so shorter titles come before longer ones
+ * that extend them.
+ */
+class TitleTrie {
+    private final TitleTrieNode root;
+
+    /**
+     * Constructor for TitleTrie.
+     * Initializes the trie as empty.
+     */
+    TitleTrie() {
+        root = new TitleTrieNode("");
+    }
+
+    /**
+     * Adds a node under the normalized title of its library item.
+     * @param node The LibraryItemNode to add.
+     */
+    void add(LibraryItemNode node) {
+        String key = CatalogText.normalize(node.libraryItem.getTitle());
+        TitleTrieNode current = root;
+        int position = 0;
+        while (position < key.length()) {
+            int index = current.findChild(key.charAt(position));
+            if (index < 0) {
+                TitleTrieNode leaf = new TitleTrieNode(key.substring(position));
+                current.insertChild(-index - 1, leaf);
+                current = leaf;
+                position = key.length();
+                break;
+            }
+            TitleTrieNode child = current.children[index];
+            int common = commonPrefixLength(child.label, key, position);
+            if (common < child.label.length()) {
+                // Split the edge so the shared part gets its own node.
+                TitleTrieNode split = new TitleTrieNode(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.insertChild(0, child);
+                current.children[index] = split;
+                child = split;
+            }
+            current = child;
+            position += common;
+        }
+        if (current.items == null) {
+            current.items = new ArrayList<>(1);
+        }
+        current.items.add(node);
+    }
+
+    /**
+     * Removes a node from the trie, merging edges that are no longer needed.
+     * @param node The LibraryItemNode to remove.
+     */
+    void remove(LibraryItemNode node) {
+        String key = CatalogText.normalize(node.libraryItem.getTitle());
+        TitleTrieNode parent = null;
+        int parentIndex = -1;
+        TitleTrieNode current = root;
+        int position = 0;
+        while (position < key.length()) {
+            int index = current.findChild(key.charAt(position));
+            if (index < 0) {
+                return;
+            }
+            TitleTrieNode child = current.children[index];
+            if (!key.startsWith(child.label, position)) {
+                return;
+            }
+            parent = current;
+            parentIndex = index;
+            current = child;
+            position += child.label.length();
+        }
+        if (current.items == null || !current.items.remove(node)) {
+            return;
+        }
+        if (!current.items.isEmpty() || current == root) {
+            return;
+        }
+        current.items = null;
+        if (current.childCount == 0) {
+            parent.removeChild(parentIndex);
+            if (parent != root && parent.items == null && parent.childCount == 1) {
+                mergeWithChild(parent);
+            }
+        } else if (current.childCount == 1) {
+            mergeWithChild(current);
+        }
+    }
+
+    /**
+     * Merges a node that holds no items with its only child.
+     * @param node The node to merge.
+     */
+    private static void mergeWithChild(TitleTrieNode node) {
+        TitleTrieNode child = node.children[0];
+        node.label = node.label + child.label;
+        node.children = child.children;
+        node.childCount = child.childCount;
+        node.items = child.items;
+    }
+
+    /**
+     * Finds the titles that start with a prefix.
+     * @param prefix The beginning of the title; case, accents and extra spaces are ignored.
+     * @param limit The maximum number of nodes to return.
+     * @return Up to limit matching nodes, in alphabetical order of title.
+     */
+    List<LibraryItemNode> complete(String prefix, int limit) {
+        List<LibraryItemNode> result = new ArrayList<>();
+        String key = CatalogText.normalize(prefix);
+        TitleTrieNode current = root;
+        int position = 0;
+        while (position < key.length()) {
+            int index = current.findChild(key.charAt(position));
+            if (index < 0) {
+                return result;
+            }
+            TitleTrieNode child = current.children[index];
+            int common = commonPrefixLength(child.label, key, position);
+            if (common < child.label.length() && position + common < key.length()) {
+                return result;
+            }
+            current = child;
+            position += common;
+        }
+        collect(current, result, limit);
+        return result;
+    }
+
+    /**
+     * Adds the nodes of a subtree in alphabetical order until the limit is reached.
+     * @param node The root of the subtree.
+     * @param result The list to add to.
+     * @param limit The maximum size of the list.
+     */
+    private static void collect(TitleTrieNode node, List<LibraryItemNode> result, int limit) {
+        if (node.items != null) {
+            for (LibraryItemNode item : node.items) {
+                if (result.size() == limit) {
+                    return;
+                }
+                result.add(item);
+            }
+        }
+        for (int i = 0; i < node.childCount && result.size() < limit; i++) {
+            collect(node.children[i], result, limit);
+        }
+    }
+
+    /**
+     * Counts how many characters a label shares with a key starting at a position.
+     * @param label The edge label.
+     * @param key The key being looked up.
+     * @param position The position in the key where the label starts.
+     * @return The length of the common prefix.
+     */
+    private static int commonPrefixLength(String label, String key, int position) {
+        int length = Math.min(label.length(), key.length() - position);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(position + i)) {
+            i++;
+        }
+        return i;
+    }
+}